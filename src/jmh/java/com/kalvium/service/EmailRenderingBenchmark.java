@@ -0,0 +1,150 @@
+package com.kalvium.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.kalvium.model.RunResult;
+
+/**
+ * Per-user notification rendering: escaping the step log, building the email HTML and
+ * encoding screenshot attachments into the mail API request. Payloads match a real
+ * run: 4 screenshots of 50-500 KB and a 60-line step log. The legacy* methods are the previous implementations, kept
+ * here as the baseline. Run with {@code mvn -Pjmh compile exec:exec} (-prof gc is on by
+ * default, so gc.alloc.rate.norm shows bytes allocated per operation).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx320m", "-XX:+UseSerialGC"})
+public class EmailRenderingBenchmark {
+
+    private static final int[] SCREENSHOT_KB = {50, 150, 300, 500};
+    private static final String[] DESCRIPTIONS = {
+        "After navigating to internships", "Worklog form opened", "Form filled (bundled)", "After submit - dialog closed"
+    };
+
+    private final EmailService emailService = new EmailService();
+    private List<String> steps;
+    private String joinedSteps;
+    private RunResult result;
+    private List<RunResult.Screenshot> screenshots;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        steps = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            steps.add(String.format("[17:00:%02d.%03d] %s %s in %d ms: <div class=\"%s\"> user's \"step\" & detail #%d",
+                    i % 60, random.nextInt(1000), i % 7 == 0 ? "navigation" : "locate",
+                    i % 11 == 0 ? "FAILED" : "OK", random.nextInt(3000), "radix-:r" + i + ":", i));
+        }
+        joinedSteps = String.join("\n", steps);
+
+        screenshots = new ArrayList<>();
+        for (int i = 0; i < SCREENSHOT_KB.length; i++) {
+            byte[] data = new byte[SCREENSHOT_KB[i] * 1024];
+            random.nextBytes(data);
+            screenshots.add(new RunResult.Screenshot(DESCRIPTIONS[i], data, "image/png"));
+        }
+        result = new RunResult(RunResult.Status.ERROR, "ERROR: Submit button not clickable", steps, screenshots);
+    }
+
+    @Benchmark
+    public String escapeStepLog() {
+        return EmailService.escapeHtmlLines(steps);
+    }
+
+    @Benchmark
+    public String legacyEscapeStepLog() {
+        return legacyEscapeHtml(String.join("\n", steps));
+    }
+
+    @Benchmark
+    public String escapeJoinedText() {
+        return EmailService.escapeHtml(joinedSteps);
+    }
+
+    @Benchmark
+    public String legacyEscapeJoinedText() {
+        return legacyEscapeHtml(joinedSteps);
+    }
+
+    @Benchmark
+    public String sanitizeFilenames() {
+        String last = null;
+        for (String description : DESCRIPTIONS) {
+            last = EmailService.sanitizeFilename(description);
+        }
+        return last;
+    }
+
+    @Benchmark
+    public String legacySanitizeFilenames() {
+        String last = null;
+        for (String description : DESCRIPTIONS) {
+            last = legacySanitizeFilename(description);
+        }
+        return last;
+    }
+
+    @Benchmark
+    public String successEmailHtml() {
+        return emailService.buildSuccessEmailHtml("auth-session-1234", result.describe());
+    }
+
+    @Benchmark
+    public String errorEmailHtml() {
+        return emailService.buildErrorEmailHtml("auth-session-1234", result.getMessage(), result.getSteps());
+    }
+
+    @Benchmark
+    public String attachmentRequestBody() throws IOException {
+        return NotificationDispatcher.requestBody("from@example.com", "to@example.com", "Worklog Submission Failed",
+                emailService.buildErrorEmailHtml("auth-session-1234", result.getMessage(), result.getSteps()),
+                emailService.buildAttachments(screenshots));
+    }
+
+    @Benchmark
+    public Object legacyAttachments() {
+        List<String> encoded = new ArrayList<>();
+        for (int i = 0; i < screenshots.size(); i++) {
+            RunResult.Screenshot ss = screenshots.get(i);
+            encoded.add("screenshot_" + (i + 1) + "_" + legacySanitizeFilename(ss.getDescription()) + "." + ss.getFileExtension());
+            encoded.add(Base64.getEncoder().encodeToString(ss.getData()));
+        }
+        return encoded;
+    }
+
+    private static String legacyEscapeHtml(String text) {
+        return text
+                .replace("&", "&amp;")
+                .replace("<", "&lt;")
+                .replace(">", "&gt;")
+                .replace("\"", "&quot;")
+                .replace("'", "&#39;");
+    }
+
+    private static String legacySanitizeFilename(String name) {
+        return name.toLowerCase()
+                .replaceAll("[^a-z0-9]", "_")
+                .replaceAll("_+", "_")
+                .replaceAll("^_|_$", "");
+    }
+}
@@ -0,0 +1,55 @@
+package com.kalvium.benchmark;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+@Controller
+@Profile("benchmark")
+public class BenchmarkController {
+
+    @Autowired
+    private WorklogBenchmark benchmark;
+
+    @Autowired
+    private FixturePortalServer fixturePortal;
+
+    @Autowired
+    private FakeResendServer fakeResend;
+
+    @Autowired
+    private HttpEngineCheck httpEngineCheck;
+
+    @PostMapping("/api/benchmark")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> runBenchmark(@RequestParam(defaultValue = "10") int iterations) {
+        return ResponseEntity.ok(benchmark.run(Math.max(1, Math.min(iterations, 200))));
+    }
+
+    @PostMapping("/api/benchmark/http-engine")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> checkHttpEngine() {
+        Map<String, Object> report = httpEngineCheck.run();
+        return Boolean.TRUE.equals(report.get("passed")) ? ResponseEntity.ok(report)
+                : ResponseEntity.internalServerError().body(report);
+    }
+
+    @GetMapping("/api/benchmark/fixture")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> fixtureStats() {
+        return ResponseEntity.ok(fixturePortal.getStats());
+    }
+
+    @GetMapping("/api/benchmark/resend")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> resendStats() {
+        return ResponseEntity.ok(fakeResend.getStats());
+    }
+}
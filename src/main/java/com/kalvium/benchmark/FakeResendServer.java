@@ -0,0 +1,151 @@
+package com.kalvium.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Local stand-in for the Resend API's POST /emails, so the notification outbox can
+ * be exercised without sending mail. Accepted messages are kept in memory; 429 and
+ * 503 responses can be injected to exercise the dispatcher's retries.
+ */
+@Component
+@Profile({"benchmark", "resend-stub"})
+public class FakeResendServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(FakeResendServer.class);
+    private static final int KEPT_MESSAGES = 50;
+
+    @Value("${resend.stub.port:8098}")
+    private int port;
+
+    @Value("${resend.stub.rate-limit-rate:0}")
+    private double rateLimitRate;
+
+    @Value("${resend.stub.failure-rate:0}")
+    private double failureRate;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong attachmentBytes = new AtomicLong();
+    private final Deque<Map<String, Object>> received = new ArrayDeque<>();
+
+    @PostConstruct
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        executor = Executors.newFixedThreadPool(2);
+        server.setExecutor(executor);
+        server.createContext("/emails", this::handle);
+        server.start();
+        logger.info("Fake Resend API listening on http://localhost:{} (429 rate {}, 503 rate {})",
+                port, rateLimitRate, failureRate);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("accepted", accepted.get());
+        stats.put("rateLimited", rateLimited.get());
+        stats.put("failed", failed.get());
+        stats.put("attachmentBase64Bytes", attachmentBytes.get());
+        synchronized (received) {
+            stats.put("recent", new ArrayList<>(received));
+        }
+        return stats;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "{\"message\":\"Method not allowed\"}");
+                return;
+            }
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < rateLimitRate) {
+                rateLimited.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 429, "{\"message\":\"Too many requests\"}");
+                return;
+            }
+            if (roll < rateLimitRate + failureRate) {
+                failed.incrementAndGet();
+                send(exchange, 503, "{\"message\":\"Service unavailable\"}");
+                return;
+            }
+
+            JsonObject email = JsonParser.parseString(body).getAsJsonObject();
+            String id = UUID.randomUUID().toString();
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("id", id);
+            summary.put("subject", email.has("subject") ? email.get("subject").getAsString() : null);
+            summary.put("htmlLength", email.has("html") ? email.get("html").getAsString().length() : 0);
+            List<String> fileNames = new ArrayList<>();
+            if (email.has("attachments")) {
+                email.getAsJsonArray("attachments").forEach(attachment -> {
+                    JsonObject file = attachment.getAsJsonObject();
+                    fileNames.add(file.get("filename").getAsString());
+                    attachmentBytes.addAndGet(file.get("content").getAsString().length());
+                });
+            }
+            summary.put("attachments", fileNames);
+            synchronized (received) {
+                received.addFirst(summary);
+                while (received.size() > KEPT_MESSAGES) {
+                    received.removeLast();
+                }
+            }
+            accepted.incrementAndGet();
+            send(exchange, 200, "{\"id\":\"" + id + "\"}");
+        } catch (RuntimeException e) {
+            send(exchange, 422, "{\"message\":\"Invalid JSON\"}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.kalvium.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Local stand-in for the Kalvium portal, serving recorded pages from
+ * {@code fixtures/portal} with the same DOM shape as the real internships page.
+ * Latency, jitter and a failure rate can be injected so end-to-end runs can be
+ * benchmarked without touching the live portal. The HTTP engine's pending and submit
+ * paths are served too; in {@link ApiMode#UNSUPPORTED} they answer with HTML so the
+ * engine's fallback to the browser can be exercised.
+ */
+@Component
+@Profile("benchmark")
+public class FixturePortalServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(FixturePortalServer.class);
+    private static final String FIXTURE_ROOT = "fixtures/portal/";
+    private static final String LOGIN_PATH = "/realms/kalvium/protocol/openid-connect/auth";
+
+    @Value("${fixture.port:8099}")
+    private int port;
+
+    @Value("${fixture.latency-ms:0}")
+    private long latencyMillis;
+
+    @Value("${fixture.jitter-ms:0}")
+    private long jitterMillis;
+
+    @Value("${fixture.failure-rate:0}")
+    private double failureRate;
+
+    @Value("${fixture.pending-count:1}")
+    private volatile int pendingCount;
+
+    @Value("${http.engine.pending-path:/api/worklogs/pending}")
+    private String enginePendingPath;
+
+    @Value("${http.engine.submit-path:/api/worklogs/{id}/submit}")
+    private String engineSubmitPath;
+
+    public enum ApiMode {
+        JSON,
+        UNSUPPORTED
+    }
+
+    private volatile ApiMode apiMode = ApiMode.JSON;
+    private Pattern engineSubmitPattern;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedFailures = new AtomicLong();
+    private final AtomicLong submissions = new AtomicLong();
+    private final AtomicLong apiSubmissions = new AtomicLong();
+
+    @PostConstruct
+    public void start() throws IOException {
+        String[] parts = engineSubmitPath.split("\\{id\\}", -1);
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                regex.append("[^/]+");
+            }
+            regex.append(Pattern.quote(parts[i]));
+        }
+        engineSubmitPattern = Pattern.compile(regex.toString());
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        executor = Executors.newFixedThreadPool(4);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        logger.info("Fixture portal listening on http://localhost:{} (latency {}±{} ms, failure rate {})",
+                port, latencyMillis, jitterMillis, failureRate);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requests", requests.get());
+        stats.put("injectedFailures", injectedFailures.get());
+        stats.put("submissions", submissions.get());
+        stats.put("apiSubmissions", apiSubmissions.get());
+        stats.put("pendingCount", pendingCount);
+        stats.put("apiMode", apiMode.name());
+        return stats;
+    }
+
+    public long getApiSubmissions() {
+        return apiSubmissions.get();
+    }
+
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    public ApiMode getApiMode() {
+        return apiMode;
+    }
+
+    /**
+     * Change what the portal reports, e.g. to set up one HTTP engine scenario.
+     */
+    public void configure(int pendingCount, ApiMode apiMode) {
+        this.pendingCount = pendingCount;
+        this.apiMode = apiMode;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        String path = exchange.getRequestURI().getPath();
+        try {
+            delay();
+            boolean isStatic = path.startsWith("/static/");
+            if (!isStatic && failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+                injectedFailures.incrementAndGet();
+                send(exchange, 503, "text/plain", "Injected failure".getBytes(StandardCharsets.UTF_8), null);
+                return;
+            }
+
+            if (path.equals("/")) {
+                send(exchange, 200, "text/html; charset=utf-8", resource("index.html"), "no-cache");
+            } else if (path.equals("/internships")) {
+                if (!hasSessionCookie(exchange)) {
+                    exchange.getResponseHeaders().set("Location", LOGIN_PATH);
+                    send(exchange, 302, "text/plain", new byte[0], null);
+                    return;
+                }
+                send(exchange, 200, "text/html; charset=utf-8", resource("internships.html"), "no-cache");
+            } else if (path.equals(LOGIN_PATH)) {
+                send(exchange, 200, "text/html; charset=utf-8",
+                        "<html><body><h1>Sign in</h1></body></html>".getBytes(StandardCharsets.UTF_8), "no-store");
+            } else if (path.equals("/api/fixture/pending")) {
+                send(exchange, 200, "application/json", pendingJson(), "no-store");
+            } else if (path.equals("/api/fixture/submit") && "POST".equals(exchange.getRequestMethod())) {
+                exchange.getRequestBody().readAllBytes();
+                submissions.incrementAndGet();
+                send(exchange, 200, "application/json", "{\"success\":true}".getBytes(StandardCharsets.UTF_8), "no-store");
+            } else if (path.equals(enginePendingPath) || engineSubmitPattern.matcher(path).matches()) {
+                handleEngineApi(exchange, path);
+            } else if (isStatic) {
+                byte[] body = resource(path.substring(1));
+                if (body == null) {
+                    send(exchange, 404, "text/plain", new byte[0], null);
+                    return;
+                }
+                send(exchange, 200, contentType(path), body, "public, max-age=31536000, immutable");
+            } else {
+                send(exchange, 404, "text/plain", new byte[0], null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleEngineApi(HttpExchange exchange, String path) throws IOException {
+        boolean submit = !path.equals(enginePendingPath);
+        if (submit != "POST".equals(exchange.getRequestMethod())) {
+            send(exchange, 405, "text/plain", new byte[0], null);
+            return;
+        }
+        if (!hasSessionCookie(exchange)) {
+            exchange.getResponseHeaders().set("Location", LOGIN_PATH);
+            send(exchange, 302, "text/plain", new byte[0], null);
+            return;
+        }
+        if (apiMode == ApiMode.UNSUPPORTED) {
+            send(exchange, 200, "text/html; charset=utf-8", resource("index.html"), "no-cache");
+            return;
+        }
+        if (!submit) {
+            send(exchange, 200, "application/json", pendingJson(), "no-store");
+            return;
+        }
+        exchange.getRequestBody().readAllBytes();
+        apiSubmissions.incrementAndGet();
+        send(exchange, 200, "application/json", "{\"success\":true}".getBytes(StandardCharsets.UTF_8), "no-store");
+    }
+
+    private void delay() throws InterruptedException {
+        long millis = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    private boolean hasSessionCookie(HttpExchange exchange) {
+        return exchange.getRequestHeaders().getOrDefault("Cookie", List.of()).stream()
+                .anyMatch(header -> header.contains("KEYCLOAK_IDENTITY="));
+    }
+
+    private byte[] pendingJson() {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < pendingCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"fixture-").append(i + 1).append("\",\"date\":\"Pending day ").append(i + 1).append("\"}");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] resource(String name) throws IOException {
+        try (InputStream input = getClass().getClassLoader().getResourceAsStream(FIXTURE_ROOT + name)) {
+            return input != null ? input.readAllBytes() : null;
+        }
+    }
+
+    private String contentType(String path) {
+        if (path.endsWith(".js")) {
+            return "application/javascript";
+        }
+        if (path.endsWith(".css")) {
+            return "text/css";
+        }
+        return "application/octet-stream";
+    }
+
+    private void send(HttpExchange exchange, int status, String contentType, byte[] body, String cacheControl)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        if (cacheControl != null) {
+            exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+        }
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
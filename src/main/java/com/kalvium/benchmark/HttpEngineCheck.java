@@ -0,0 +1,111 @@
+package com.kalvium.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import com.kalvium.model.AuthConfig;
+import com.kalvium.model.RunResult;
+import com.kalvium.service.WorklogService;
+
+/**
+ * Drives the browserless HTTP engine against the fixture portal's copy of the
+ * pending and submit endpoints, one scenario per outcome: submitted, nothing
+ * pending, session expired and fallback to the browser. Each scenario reports
+ * whether the run ended the way the engine promises.
+ */
+@Service
+@Profile("benchmark")
+public class HttpEngineCheck {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpEngineCheck.class);
+
+    @Autowired
+    private WorklogService worklogService;
+
+    @Autowired
+    private FixturePortalServer fixturePortal;
+
+    private interface Expectation {
+        String check(RunResult result, long apiSubmissions);
+    }
+
+    public synchronized Map<String, Object> run() {
+        int pendingCount = fixturePortal.getPendingCount();
+        FixturePortalServer.ApiMode apiMode = fixturePortal.getApiMode();
+        Map<String, Object> scenarios = new LinkedHashMap<>();
+        boolean passed = true;
+
+        try {
+            passed &= scenario(scenarios, "submitted", 1, FixturePortalServer.ApiMode.JSON, fixtureConfig(true),
+                    (result, submissions) -> expect(result.isSuccess() && submissions == 1 && !fellBack(result),
+                            "one submission over HTTP without the browser"));
+            passed &= scenario(scenarios, "nothing pending", 0, FixturePortalServer.ApiMode.JSON, fixtureConfig(true),
+                    (result, submissions) -> expect(result.isSuccess() && submissions == 0
+                            && result.getMessage().contains("No pending") && !fellBack(result),
+                            "success with nothing submitted"));
+            passed &= scenario(scenarios, "session expired", 1, FixturePortalServer.ApiMode.JSON, fixtureConfig(false),
+                    (result, submissions) -> expect(!result.isSuccess() && submissions == 0
+                            && result.getFailureKind() == RunResult.FailureKind.TERMINAL && !fellBack(result),
+                            "terminal failure without a browser run"));
+            passed &= scenario(scenarios, "fallback to browser", 1, FixturePortalServer.ApiMode.UNSUPPORTED,
+                    fixtureConfig(true),
+                    (result, submissions) -> expect(submissions == 0 && fellBack(result),
+                            "unsupported API answer hands the run to the browser"));
+        } finally {
+            fixturePortal.configure(pendingCount, apiMode);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("passed", passed);
+        report.put("scenarios", scenarios);
+        logger.info("HTTP engine check against the fixture portal: {}", passed ? "PASSED" : "FAILED " + scenarios);
+        return report;
+    }
+
+    private boolean scenario(Map<String, Object> scenarios, String name, int pendingCount,
+                             FixturePortalServer.ApiMode apiMode, AuthConfig config, Expectation expectation) {
+        fixturePortal.configure(pendingCount, apiMode);
+        long submissionsBefore = fixturePortal.getApiSubmissions();
+        long start = System.currentTimeMillis();
+        RunResult result = worklogService.submitWorklog(config, "http");
+        String failure = expectation.check(result, fixturePortal.getApiSubmissions() - submissionsBefore);
+
+        Map<String, Object> outcome = new LinkedHashMap<>();
+        outcome.put("passed", failure == null);
+        outcome.put("message", result.getMessage());
+        outcome.put("fellBackToBrowser", fellBack(result));
+        outcome.put("durationMillis", System.currentTimeMillis() - start);
+        if (failure != null) {
+            outcome.put("expected", failure);
+        }
+        scenarios.put(name, outcome);
+        return failure == null;
+    }
+
+    /** Null when the condition holds, otherwise what was expected. */
+    private static String expect(boolean condition, String expected) {
+        return condition ? null : expected;
+    }
+
+    private static boolean fellBack(RunResult result) {
+        return result.getSteps().stream().anyMatch(step -> step.contains("fell back to browser"));
+    }
+
+    private AuthConfig fixtureConfig(boolean validSession) {
+        AuthConfig config = new AuthConfig();
+        config.setAuthSessionId("http-engine-check");
+        // Without KEYCLOAK_IDENTITY the fixture redirects to the login page, like an expired session
+        config.setKeycloakIdentity(validSession ? "fixture-identity" : null);
+        config.setKeycloakSession("fixture-keycloak-session");
+        config.setTasksCompleted("Checked the HTTP engine against the fixture portal");
+        config.setChallenges("None");
+        config.setBlockers("None");
+        return config;
+    }
+}
@@ -0,0 +1,124 @@
+package com.kalvium.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.kalvium.model.AuthConfig;
+import com.kalvium.model.RunResult;
+import com.kalvium.model.StepEvent;
+import com.kalvium.service.ChromeProcessManager;
+import com.kalvium.service.WorklogService;
+
+/**
+ * Runs the full Selenium submission against the fixture portal a number of times
+ * and reports wall-time percentiles, per-step percentiles from the run events and
+ * Chrome's resident memory, so changes to the browser path can be compared.
+ */
+@Service
+@Profile("benchmark")
+public class WorklogBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorklogBenchmark.class);
+
+    @Autowired
+    private WorklogService worklogService;
+
+    @Autowired
+    private ChromeProcessManager processManager;
+
+    @Autowired
+    private FixturePortalServer fixturePortal;
+
+    @Value("${benchmark.iterations-on-startup:0}")
+    private int iterationsOnStartup;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void runOnStartup() {
+        if (iterationsOnStartup > 0) {
+            logger.info("Benchmark report: {}", run(iterationsOnStartup));
+        }
+    }
+
+    public synchronized Map<String, Object> run(int iterations) {
+        AuthConfig config = fixtureConfig();
+        List<Long> wallTimes = new ArrayList<>();
+        Map<String, List<Long>> stepTimes = new LinkedHashMap<>();
+        long peakRss = 0;
+        int successes = 0;
+
+        logger.info("=== Benchmark started: {} iteration(s) against the fixture portal ===", iterations);
+        for (int i = 0; i < iterations; i++) {
+            long start = System.currentTimeMillis();
+            RunResult result = worklogService.submitWorklog(config, "selenium");
+            wallTimes.add(System.currentTimeMillis() - start);
+            if (result.isSuccess()) {
+                successes++;
+            }
+            for (StepEvent event : result.getEvents()) {
+                if (event.isTimed()) {
+                    stepTimes.computeIfAbsent(event.getName(), k -> new ArrayList<>()).add(event.getDurationMillis());
+                }
+            }
+            // Pooled sessions stay up between runs, so this is what a warm browser costs
+            peakRss = Math.max(peakRss, processManager.getChromeRssBytes());
+            logger.info("Benchmark iteration {}/{}: {} in {} ms", i + 1, iterations,
+                    result.isSuccess() ? "OK" : "FAILED", wallTimes.get(i));
+        }
+
+        Map<String, Object> steps = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Long>> entry : stepTimes.entrySet()) {
+            steps.put(entry.getKey(), percentiles(entry.getValue()));
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("iterations", iterations);
+        report.put("successes", successes);
+        report.put("wallMillis", percentiles(wallTimes));
+        report.put("steps", steps);
+        report.put("peakChromeRssBytes", peakRss);
+        report.put("fixture", fixturePortal.getStats());
+        logger.info("=== Benchmark finished: {}/{} succeeded, wall {} ===", successes, iterations, report.get("wallMillis"));
+        return report;
+    }
+
+    private AuthConfig fixtureConfig() {
+        AuthConfig config = new AuthConfig();
+        config.setAuthSessionId("benchmark-session");
+        config.setKeycloakIdentity("benchmark-identity");
+        config.setKeycloakSession("benchmark-keycloak-session");
+        config.setTasksCompleted("Benchmarked the worklog submission against the fixture portal");
+        config.setChallenges("None");
+        config.setBlockers("None");
+        return config;
+    }
+
+    private Map<String, Long> percentiles(List<Long> samples) {
+        List<Long> sorted = new ArrayList<>(samples);
+        Collections.sort(sorted);
+        Map<String, Long> result = new LinkedHashMap<>();
+        result.put("p50", percentile(sorted, 0.50));
+        result.put("p95", percentile(sorted, 0.95));
+        result.put("max", sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1));
+        return result;
+    }
+
+    private long percentile(List<Long> sorted, double quantile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+}
@@ -20,6 +20,9 @@ public class DataSourceConfig {
     @Value("${DATABASE_URL:}")
     private String databaseUrl;
 
+    @Value("${datasource.lazy-init:false}")
+    private boolean lazyInit;
+
     @Bean
     public DataSource dataSource() {
         String dbUrl = (databaseUrl == null || databaseUrl.isEmpty()) ? DEFAULT_DATABASE_URL : databaseUrl;
@@ -53,6 +56,13 @@ public class DataSourceConfig {
             config.addDataSourceProperty("prepStmtCacheSqlLimit", "512");
             config.addDataSourceProperty("useServerPrepStmts", "true");
 
+            if (lazyInit) {
+                // Pool starts on the first getConnection() and does not fail startup when the DB is unreachable
+                config.setInitializationFailTimeout(-1);
+                HikariDataSource dataSource = new HikariDataSource();
+                config.copyStateTo(dataSource);
+                return dataSource;
+            }
             return new HikariDataSource(config);
 
         } catch (URISyntaxException e) {
@@ -0,0 +1,44 @@
+package com.kalvium.config;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import com.kalvium.util.XPathLoader;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+@Configuration
+public class LocatorConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocatorConfig.class);
+
+    @Value("${locators.file:}")
+    private String locatorsFile;
+
+    /**
+     * Layer an editable locator file over the bundled xpaths.properties and reload it on change,
+     * so a drifted selector can be fixed without a redeploy.
+     */
+    @PostConstruct
+    public void watchLocatorFile() {
+        if (locatorsFile == null || locatorsFile.isBlank()) {
+            return;
+        }
+        try {
+            XPathLoader.watch(Paths.get(locatorsFile));
+        } catch (IOException e) {
+            logger.warn("Could not watch locator file {}: {}", locatorsFile, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stopWatching() {
+        XPathLoader.stopWatching();
+    }
+}
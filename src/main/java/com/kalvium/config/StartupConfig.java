@@ -0,0 +1,25 @@
+package com.kalvium.config;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.kalvium.scheduler.WorklogScheduler;
+import com.kalvium.service.NotificationDispatcher;
+import com.kalvium.service.PrewarmService;
+
+@Configuration
+public class StartupConfig {
+
+    /**
+     * With spring.main.lazy-initialization (faststart profile) a bean's @Scheduled methods
+     * are only registered once the bean exists, so the beans that drive the daily run stay eager.
+     * Their heavy dependencies are injected with @Lazy and created on first use.
+     * LocatorConfig has no callers either and must start its file watcher at boot.
+     */
+    @Bean
+    static LazyInitializationExcludeFilter scheduledBeansExcludeFilter() {
+        return LazyInitializationExcludeFilter.forBeanTypes(WorklogScheduler.class, PrewarmService.class,
+                NotificationDispatcher.class, LocatorConfig.class);
+    }
+}
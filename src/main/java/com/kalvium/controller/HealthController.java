@@ -0,0 +1,83 @@
+package com.kalvium.controller;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.kalvium.service.ConfigCache;
+import com.kalvium.service.SupabaseConfigStorageService;
+
+/**
+ * Health endpoints kept apart from {@link WorklogController} so the first probe
+ * after boot does not instantiate the browser and job services. /health is the
+ * liveness check hit by Render and the keep-alive ping and never queries the
+ * database; /health/ready pings the database and loads the config cache if stale.
+ */
+@Controller
+public class HealthController {
+
+    private static final Logger logger = LoggerFactory.getLogger(HealthController.class);
+
+    @Autowired
+    @Lazy
+    private ConfigCache configCache;
+
+    @Autowired
+    @Lazy
+    private SupabaseConfigStorageService configStorage;
+
+    private volatile long firstHealthMillis = -1;
+
+    @GetMapping("/health")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> health() {
+        if (firstHealthMillis < 0) {
+            recordFirstHealth();
+        }
+        Integer cachedUsers = configCache.getCachedUserCount();
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "UP");
+        response.put("timestamp", System.currentTimeMillis());
+        response.put("service", "Kalvium Worklog Automation");
+        response.put("hasConfig", cachedUsers != null ? cachedUsers > 0 : null);
+        response.put("configCache", configCache.getStats());
+        response.put("timeToFirstHealthMillis", firstHealthMillis);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/health/ready")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> ready() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("timestamp", System.currentTimeMillis());
+        try {
+            response.put("databaseLatencyMillis", configStorage.ping());
+            int users = configCache.getAll().size();
+            response.put("status", "READY");
+            response.put("hasConfig", users > 0);
+            response.put("users", users);
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            response.put("status", "NOT_READY");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
+    }
+
+    private synchronized void recordFirstHealth() {
+        if (firstHealthMillis < 0) {
+            firstHealthMillis = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+            logger.info("First /health served {} ms after JVM start", firstHealthMillis);
+        }
+    }
+}
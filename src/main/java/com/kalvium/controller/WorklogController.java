@@ -1,22 +1,50 @@
 package com.kalvium.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.kalvium.model.AuthConfig;
+import com.kalvium.model.RunResult;
+import com.kalvium.service.ChromeDriverPool;
+import com.kalvium.service.ConfigCache;
+import com.kalvium.service.ConfigImportService;
+import com.kalvium.service.NetworkPolicy;
+import com.kalvium.service.NotificationOutbox;
+import com.kalvium.service.PrewarmService;
+import com.kalvium.service.RunHistoryService;
+import com.kalvium.service.ScreenshotStore;
+import com.kalvium.service.StaticAssetCache;
 import com.kalvium.service.SupabaseConfigStorageService;
-import com.kalvium.service.WorklogService;
+import com.kalvium.service.WorkQueueService;
+import com.kalvium.service.WorklogJobService;
 import com.kalvium.scheduler.WorklogScheduler;
+import com.kalvium.util.XPathLoader;
 
 @Controller
 public class WorklogController {
@@ -27,27 +55,217 @@ public class WorklogController {
     private static final Logger logger = LoggerFactory.getLogger(WorklogController.class);
 
     @Autowired
-    private WorklogService worklogService;
+    private WorklogJobService jobService;
 
     @Autowired
     private SupabaseConfigStorageService configStorage;
 
+    @Autowired
+    private ChromeDriverPool chromeDriverPool;
+
+    @Autowired
+    private NetworkPolicy networkPolicy;
+
+    @Autowired
+    private StaticAssetCache assetCache;
+
+    @Autowired
+    private PrewarmService prewarmService;
+
+    @Autowired
+    private RunHistoryService runHistory;
+
+    @Autowired
+    private WorkQueueService workQueue;
+
+    @Autowired
+    private NotificationOutbox notificationOutbox;
+
+    @Autowired
+    private ScreenshotStore screenshotStore;
+
+    @Autowired
+    private ConfigImportService configImport;
+
+    @Autowired
+    private ConfigCache configCache;
+
     @GetMapping("/")
     public String index() {
         return "index";
     }
 
-    @GetMapping("/health")
+    @GetMapping("/api/pool/stats")
     @ResponseBody
-    public ResponseEntity<Map<String, Object>> health() {
-        Map<String, Object> response = new HashMap<>();
-        response.put("status", "UP");
-        response.put("timestamp", System.currentTimeMillis());
-        response.put("service", "Kalvium Worklog Automation");
-        response.put("hasConfig", configStorage.hasConfig());
+    public ResponseEntity<Map<String, Object>> poolStats() {
+        return ResponseEntity.ok(chromeDriverPool.getStats());
+    }
+
+    @GetMapping("/api/network/stats")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> networkStats() {
+        return ResponseEntity.ok(networkPolicy.getStats());
+    }
+
+    @GetMapping("/api/assets/stats")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> assetCacheStats() {
+        return ResponseEntity.ok(assetCache.getStats());
+    }
+
+    @GetMapping("/api/notifications/stats")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> notificationStats() {
+        return ResponseEntity.ok(notificationOutbox.getStats());
+    }
+
+    @GetMapping("/api/config/cache/stats")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> configCacheStats() {
+        return ResponseEntity.ok(configCache.getStats());
+    }
+
+    @GetMapping("/api/screenshots/stats")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> screenshotStoreStats() {
+        return ResponseEntity.ok(screenshotStore.getStats());
+    }
+
+    @GetMapping("/api/screenshots")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> listScreenshots(@RequestHeader("X-Auth-Session-Id") String authSessionId,
+                                                               @RequestParam(value = "page", defaultValue = "0") int page,
+                                                               @RequestParam(value = "size", defaultValue = "20") int size) {
+        int pageIndex = Math.max(0, page);
+        int pageSize = Math.max(1, Math.min(size, 100));
+        List<Map<String, Object>> screenshots = new ArrayList<>();
+        for (ScreenshotStore.ScreenshotInfo info : screenshotStore.listScreenshots(authSessionId, pageIndex, pageSize)) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("id", info.getId());
+            entry.put("description", info.getDescription());
+            entry.put("contentType", info.getContentType());
+            entry.put("sizeBytes", info.getSizeBytes());
+            entry.put("createdAt", info.getCreatedAt().toInstant().toString());
+            entry.put("url", "/api/screenshots/" + info.getId() + "?token="
+                    + screenshotStore.downloadToken(info.getId(), authSessionId));
+            screenshots.add(entry);
+        }
+
+        int total = screenshotStore.countScreenshots(authSessionId);
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("page", pageIndex);
+        response.put("size", pageSize);
+        response.put("total", total);
+        response.put("hasMore", (long) (pageIndex + 1) * pageSize < total);
+        response.put("screenshots", screenshots);
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Streams one stored screenshot, authorised by the signed, expiring token from the listing.
+     * Blobs are content-addressed, so the ETag is the SHA-256 and the response never
+     * changes for a given id.
+     */
+    @GetMapping("/api/screenshots/{id}")
+    public ResponseEntity<StreamingResponseBody> downloadScreenshot(@PathVariable("id") long id,
+                                                                   @RequestParam("token") String token,
+                                                                   @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        ScreenshotStore.ScreenshotInfo info = screenshotStore.findScreenshot(id, token);
+        if (info == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        String etag = "\"" + info.getSha256() + "\"";
+        CacheControl cacheControl = CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable();
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(info.getContentType()))
+                .contentLength(info.getSizeBytes())
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .body(out -> screenshotStore.streamBlob(info.getSha256(), info.getSizeBytes(), out));
+    }
+
+    @GetMapping("/api/locators/stats")
+    @ResponseBody
+    public ResponseEntity<List<Map<String, Object>>> locatorStats() {
+        return ResponseEntity.ok(XPathLoader.getStats());
+    }
+
+    @GetMapping("/api/prewarm")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> prewarmReport() {
+        Map<String, Object> report = prewarmService.getLastReport();
+        if (report == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(report);
+    }
+
+    @PostMapping("/api/prewarm")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> prewarm() {
+        return ResponseEntity.ok(prewarmService.prewarm());
+    }
+
+    @GetMapping("/api/runs")
+    @ResponseBody
+    public ResponseEntity<List<Map<String, Object>>> recentRuns() {
+        return ResponseEntity.ok(runHistory.listRuns());
+    }
+
+    @GetMapping("/api/runs/step-stats")
+    @ResponseBody
+    public ResponseEntity<List<Map<String, Object>>> stepStats() {
+        return ResponseEntity.ok(runHistory.getStepStats());
+    }
+
+    @GetMapping("/api/runs/{runId}")
+    @ResponseBody
+    public ResponseEntity<RunHistoryService.RunRecord> runDetails(@PathVariable("runId") String runId) {
+        RunHistoryService.RunRecord record = runHistory.getRun(runId);
+        if (record == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(record);
+    }
+
+    @GetMapping("/api/queue/dead")
+    @ResponseBody
+    public ResponseEntity<List<Map<String, Object>>> deadLetters() {
+        return ResponseEntity.ok(workQueue.getDeadLetters());
+    }
+
+    @PostMapping("/api/queue/dead/requeue")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> requeueDeadLetters(
+            @RequestParam(value = "runDate", required = false) String runDate) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            LocalDate date = runDate != null ? LocalDate.parse(runDate) : LocalDate.now(ZoneId.of("Asia/Kolkata"));
+            int requeued = workQueue.requeueDeadLetters(date);
+            worklogScheduler.pollQueue();
+            response.put("status", "success");
+            response.put("runDate", date.toString());
+            response.put("requeued", requeued);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    @PostMapping("/api/network/blocking")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> setNetworkBlocking(@RequestParam("enabled") boolean enabled) {
+        networkPolicy.setBlockingEnabled(enabled);
+        return ResponseEntity.ok(networkPolicy.getStats());
+    }
+
     @PostMapping("/api/config/save")
     @ResponseBody
     public ResponseEntity<Map<String, String>> saveConfig(@RequestBody AuthConfig config) {
@@ -64,21 +282,126 @@ public class WorklogController {
         }
     }
 
-    @PostMapping("/api/run")
+    /**
+     * Bulk import of user configurations: a JSON array, NDJSON or CSV body, picked by
+     * the format parameter or the Content-Type. Send the body with its real
+     * Content-Type; a form-encoded body is consumed as request parameters.
+     */
+    @PostMapping("/api/config/import")
     @ResponseBody
-    public ResponseEntity<Map<String, String>> run(@RequestBody AuthConfig config) {
-        Map<String, String> response = new HashMap<>();
+    public ResponseEntity<Map<String, Object>> importConfigs(InputStream body,
+                                                             @RequestHeader(value = "Content-Type", required = false) String contentType,
+                                                             @RequestParam(value = "format", required = false) String format) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            Map<String, Object> report = configImport.importConfigs(body, ConfigImportService.Format.detect(format, contentType));
+            return ResponseEntity.ok(report);
+        } catch (IllegalArgumentException | IOException e) {
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
 
+    @PostMapping("/api/run")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> run(@RequestBody AuthConfig config,
+                                                   @RequestParam(value = "engine", required = false) String engine) {
         try {
             configStorage.saveConfig(config);
         } catch (Exception e) {
             logger.warn("Could not save config: " + e.getMessage());
         }
 
-        String result = worklogService.submitWorklog(config);
-        response.put("status", result.startsWith("SUCCESS") ? "success" : "error");
-        response.put("message", result);
-        return result.startsWith("SUCCESS") ? ResponseEntity.ok(response) : ResponseEntity.badRequest().body(response);
+        Map<String, Object> response = new HashMap<>();
+        if (config == null || config.getAuthSessionId() == null) {
+            response.put("status", "error");
+            response.put("message", "No configuration provided.");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        try {
+            WorklogJobService.Job job = jobService.submit(config, engine);
+            String base = "/api/jobs/" + job.getId();
+            response.put("status", "accepted");
+            response.put("jobId", job.getId());
+            response.put("statusUrl", base);
+            response.put("eventsUrl", base + "/events");
+            response.put("resultUrl", base + "/result");
+            return ResponseEntity.accepted().body(response);
+        } catch (IllegalStateException e) {
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(response);
+        }
+    }
+
+    @GetMapping("/api/jobs/{jobId}")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> jobStatus(@PathVariable("jobId") String jobId,
+                                                         @RequestParam(value = "since", defaultValue = "0") int since) {
+        WorklogJobService.Job job = jobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job.describe(since));
+    }
+
+    @GetMapping(value = "/api/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> jobEvents(@PathVariable("jobId") String jobId,
+                                                @RequestHeader(value = "Last-Event-ID", defaultValue = "-1") int lastEventId) {
+        WorklogJobService.Job job = jobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(jobService.subscribe(job, lastEventId));
+    }
+
+    @GetMapping("/api/jobs/{jobId}/result")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> jobResult(@PathVariable("jobId") String jobId) {
+        WorklogJobService.Job job = jobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!job.isFinished()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(job.describe(Integer.MAX_VALUE));
+        }
+
+        RunResult result = job.getResult();
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("jobId", job.getId());
+        response.put("runId", result.getRunId());
+        response.put("success", result.isSuccess());
+        response.put("message", result.getMessage());
+        response.put("durationMillis", result.getDurationMillis());
+        response.put("steps", result.getSteps());
+        response.put("timings", result.getTimings());
+
+        List<Map<String, Object>> screenshots = new ArrayList<>();
+        for (int i = 0; i < result.getScreenshots().size(); i++) {
+            RunResult.Screenshot screenshot = result.getScreenshots().get(i);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("description", screenshot.getDescription());
+            entry.put("contentType", screenshot.getContentType());
+            entry.put("url", "/api/jobs/" + job.getId() + "/screenshots/" + i);
+            screenshots.add(entry);
+        }
+        response.put("screenshots", screenshots);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/api/jobs/{jobId}/screenshots/{index}")
+    public ResponseEntity<byte[]> jobScreenshot(@PathVariable("jobId") String jobId, @PathVariable("index") int index) {
+        WorklogJobService.Job job = jobService.getJob(jobId);
+        if (job == null || job.getResult() == null
+                || index < 0 || index >= job.getResult().getScreenshots().size()) {
+            return ResponseEntity.notFound().build();
+        }
+        RunResult.Screenshot screenshot = job.getResult().getScreenshots().get(index);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(screenshot.getContentType()))
+                .body(screenshot.getData());
     }
 
     @GetMapping("/api/users")
@@ -86,7 +409,7 @@ public class WorklogController {
     public ResponseEntity<Map<String, Object>> listUsers() {
         Map<String, Object> response = new HashMap<>();
         try {
-            java.util.List<AuthConfig> configs = configStorage.loadAllConfigs();
+            java.util.List<AuthConfig> configs = configCache.getAll();
             java.util.List<Map<String, String>> users = new java.util.ArrayList<>();
 
             for (int i = 0; i < configs.size(); i++) {
@@ -136,7 +459,7 @@ public class WorklogController {
         Map<String, String> response = new HashMap<>();
         try {
             logger.info("Manually triggering worklog submission via API");
-            new Thread(() -> worklogScheduler.runDailyWorklogSubmission()).start();
+            new Thread(() -> worklogScheduler.triggerManualRun()).start();
             response.put("status", "success");
             response.put("message", "Worklog submission triggered! Check logs for progress.");
             return ResponseEntity.ok(response);
@@ -0,0 +1,143 @@
+package com.kalvium.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RunResult {
+
+    public enum Status {
+        SUCCESS,
+        ERROR
+    }
+
+    /**
+     * Whether a failed run is worth retrying. Terminal failures (e.g. rejected
+     * cookies) will fail the same way until the user acts.
+     */
+    public enum FailureKind {
+        RETRYABLE,
+        TERMINAL
+    }
+
+    public static class Screenshot {
+        private final String description;
+        private final byte[] data;
+        private final String contentType;
+
+        public Screenshot(String description, byte[] data, String contentType) {
+            this.description = description;
+            this.data = data;
+            this.contentType = contentType;
+        }
+
+        public String getDescription() { return description; }
+        public byte[] getData() { return data; }
+        public String getContentType() { return contentType; }
+
+        public String getFileExtension() {
+            if (contentType == null || !contentType.startsWith("image/")) {
+                return "png";
+            }
+            String subtype = contentType.substring("image/".length());
+            return subtype.equals("jpeg") ? "jpg" : subtype;
+        }
+    }
+
+    private final Status status;
+    private final String message;
+    private final List<String> steps;
+    private final List<Screenshot> screenshots;
+    private final Map<String, Long> timings;
+    private long durationMillis;
+    private String runId;
+    private FailureKind failureKind;
+    private List<StepEvent> events = Collections.emptyList();
+
+    public RunResult(Status status, String message, List<String> steps, List<Screenshot> screenshots) {
+        this.status = status;
+        this.message = message;
+        this.steps = steps != null ? steps : new ArrayList<>();
+        this.screenshots = screenshots != null ? screenshots : new ArrayList<>();
+        this.timings = new LinkedHashMap<>();
+    }
+
+    public static RunResult success(String message, List<String> steps) {
+        return new RunResult(Status.SUCCESS, message, steps, null);
+    }
+
+    public static RunResult error(String message, List<String> steps) {
+        return new RunResult(Status.ERROR, message, steps, null);
+    }
+
+    public Status getStatus() { return status; }
+    public String getMessage() { return message; }
+    public List<String> getSteps() { return Collections.unmodifiableList(steps); }
+    public List<Screenshot> getScreenshots() { return Collections.unmodifiableList(screenshots); }
+    public Map<String, Long> getTimings() { return Collections.unmodifiableMap(timings); }
+    public long getDurationMillis() { return durationMillis; }
+    public String getRunId() { return runId; }
+    public FailureKind getFailureKind() { return failureKind; }
+    public List<StepEvent> getEvents() { return events; }
+
+    public boolean isSuccess() {
+        return status == Status.SUCCESS;
+    }
+
+    public RunResult withFailureKind(FailureKind failureKind) {
+        this.failureKind = failureKind;
+        return this;
+    }
+
+    /**
+     * Failed runs are retryable unless explicitly marked terminal.
+     */
+    public boolean isRetryable() {
+        return status == Status.ERROR && failureKind != FailureKind.TERMINAL;
+    }
+
+    public RunResult withDuration(long durationMillis) {
+        this.durationMillis = durationMillis;
+        return this;
+    }
+
+    /**
+     * Attach the structured step events of the run; timed events also feed {@link #getTimings()}.
+     */
+    public RunResult withEvents(String runId, List<StepEvent> events) {
+        this.runId = runId;
+        this.events = events != null ? List.copyOf(events) : Collections.emptyList();
+        for (StepEvent event : this.events) {
+            if (event.isTimed()) {
+                addTiming(event.getName(), event.getDurationMillis());
+            }
+        }
+        return this;
+    }
+
+    public RunResult addTiming(String name, long millis) {
+        timings.merge(name, millis, Long::sum);
+        return this;
+    }
+
+    /**
+     * Plain-text rendering of the message and steps, without screenshots.
+     */
+    public String describe() {
+        String head = message != null ? message : status.name();
+        int length = head.length() + 10;
+        for (String step : steps) {
+            length += step.length() + 1;
+        }
+        StringBuilder text = new StringBuilder(length).append(head);
+        if (!steps.isEmpty()) {
+            text.append("\n\nSTEPS:\n");
+            for (String step : steps) {
+                text.append(step).append('\n');
+            }
+        }
+        return text.toString();
+    }
+}
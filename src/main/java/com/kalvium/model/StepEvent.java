@@ -0,0 +1,45 @@
+package com.kalvium.model;
+
+import java.util.Collections;
+import java.util.Map;
+
+public class StepEvent {
+
+    public enum Outcome {
+        OK,
+        INFO,
+        WARNING,
+        FAILED
+    }
+
+    private final String name;
+    private final String message;
+    private final long startedAt;
+    private final long durationMillis;
+    private final Outcome outcome;
+    private final Map<String, String> attributes;
+
+    public StepEvent(String name, String message, long startedAt, long durationMillis,
+                     Outcome outcome, Map<String, String> attributes) {
+        this.name = name;
+        this.message = message;
+        this.startedAt = startedAt;
+        this.durationMillis = durationMillis;
+        this.outcome = outcome;
+        this.attributes = attributes != null ? attributes : Collections.emptyMap();
+    }
+
+    public String getName() { return name; }
+    public String getMessage() { return message; }
+    public long getStartedAt() { return startedAt; }
+    public long getDurationMillis() { return durationMillis; }
+    public Outcome getOutcome() { return outcome; }
+    public Map<String, String> getAttributes() { return attributes; }
+
+    /**
+     * Whether this event closes a timed step rather than being a point-in-time note.
+     */
+    public boolean isTimed() {
+        return outcome != Outcome.INFO;
+    }
+}
@@ -4,8 +4,22 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
@@ -16,33 +30,82 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
+import com.kalvium.model.AuthConfig;
+import com.kalvium.model.RunResult;
+import com.kalvium.service.ConfigCache;
 import com.kalvium.service.EmailService;
+import com.kalvium.service.PreflightService;
+import com.kalvium.service.ScreenshotStore;
 import com.kalvium.service.SupabaseConfigStorageService;
+import com.kalvium.service.WorkQueueService;
 import com.kalvium.service.WorklogService;
+import com.kalvium.util.Backoff;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 @Component
 public class WorklogScheduler {
 
     private static final Logger logger = LoggerFactory.getLogger(WorklogScheduler.class);
+    private static final ZoneId RUN_ZONE = ZoneId.of("Asia/Kolkata");
 
     @Autowired
+    @Lazy
     private WorklogService worklogService;
 
     @Autowired
+    @Lazy
     private SupabaseConfigStorageService configStorage;
 
     @Autowired
+    @Lazy
     private EmailService emailService;
 
+    @Autowired
+    @Lazy
+    private PreflightService preflightService;
+
+    @Autowired
+    @Lazy
+    private WorkQueueService workQueue;
+
+    @Autowired
+    @Lazy
+    private ScreenshotStore screenshotStore;
+
+    @Autowired
+    @Lazy
+    private ConfigCache configCache;
+
     @Value("${app.base.url:http://localhost:8080}")
     private String appBaseUrl;
 
+    @Value("${scheduler.worker-count:1}")
+    private int workerCount;
+
+    @Value("${queue.lease-seconds:180}")
+    private int leaseSeconds;
+
+    @Value("${queue.retry.max-attempts:4}")
+    private int maxAttempts;
+
+    @Value("${queue.retry.base-delay-seconds:60}")
+    private long retryBaseDelaySeconds;
+
+    @Value("${queue.retry.max-delay-seconds:1800}")
+    private long retryMaxDelaySeconds;
+
     private final RestTemplate restTemplate;
+    private ExecutorService workerExecutor;
+    private Semaphore workerSlots;
+    private ScheduledExecutorService leaseRenewer;
 
     public WorklogScheduler() {
         PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
@@ -76,86 +139,256 @@ public class WorklogScheduler {
         }
     }
 
+    @PostConstruct
+    public void initWorkers() {
+        int workers = Math.max(1, workerCount);
+        workerExecutor = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+            private final AtomicInteger threadIndex = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "worklog-worker-" + threadIndex.incrementAndGet());
+            }
+        });
+        workerSlots = new Semaphore(workers);
+        leaseRenewer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "queue-lease-renewer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("Work queue running {} worker(s)", workers);
+    }
+
+    @PreDestroy
+    public void shutdownWorkers() {
+        workerExecutor.shutdownNow();
+        leaseRenewer.shutdownNow();
+    }
+
+    /**
+     * Fires on every instance; only the one that wins the advisory lock enqueues the day's users.
+     * Workers on all instances then pick them up through {@link #pollQueue()}.
+     */
     @Scheduled(cron = "0 00 17 * * MON-FRI", zone = "Asia/Kolkata")
-    @SuppressWarnings("BusyWait")
     public void runDailyWorklogSubmission() {
+        enqueueRun(false);
+    }
+
+    /**
+     * Manual trigger: re-queues every user for today, including ones that already finished.
+     */
+    public void triggerManualRun() {
+        enqueueRun(true);
+    }
+
+    private void enqueueRun(boolean force) {
         logger.info("=== Scheduled Worklog Automation Started at {} ===",
                 LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
 
         try {
-            java.util.List<com.kalvium.model.AuthConfig> configs = configStorage.loadAllConfigs();
+            int queued = workQueue.enqueue(LocalDate.now(RUN_ZONE), force);
+            if (queued == 0) {
+                logger.info("No users queued for this run");
+            }
+            pollQueue();
+        } catch (Exception e) {
+            logger.error("Error during scheduled worklog submission", e);
+        }
+    }
+
+    /**
+     * Claim queued users while this node has free workers. Runs on every instance.
+     */
+    @Scheduled(fixedDelayString = "${queue.poll-interval-ms:30000}", initialDelayString = "${queue.poll-interval-ms:30000}")
+    @SuppressWarnings("UseSpecificCatch")
+    public void pollQueue() {
+        try {
+            while (workerSlots.tryAcquire()) {
+                WorkQueueService.QueueItem item = workQueue.claim();
+                if (item == null) {
+                    workerSlots.release();
+                    sendSummaryIfFinished(LocalDate.now(RUN_ZONE));
+                    return;
+                }
+
+                try {
+                    workerExecutor.execute(() -> {
+                        try {
+                            processItem(item);
+                        } finally {
+                            workerSlots.release();
+                        }
+                        pollQueue();
+                    });
+                } catch (RejectedExecutionException e) {
+                    workerSlots.release();
+                    logger.warn("Worker pool is shutting down, queue item {} will be reclaimed after its lease expires",
+                            item.getId());
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error polling work queue", e);
+        }
+    }
+
+    @SuppressWarnings("UseSpecificCatch")
+    private void processItem(WorkQueueService.QueueItem item) {
+        String authId = item.getAuthSessionId();
+        String userId = "User " + (authId.length() > 8 ? "..." + authId.substring(authId.length() - 8) : authId);
+        long renewEvery = Math.max(5, leaseSeconds / 3);
+        ScheduledFuture<?> renewal = leaseRenewer.scheduleAtFixedRate(() -> {
+            boolean wasHeld = item.isLeaseHeld();
+            if (!workQueue.renew(item) && wasHeld) {
+                logger.warn("Lost lease on queue item {} for {}", item.getId(), userId);
+            }
+        }, renewEvery, renewEvery, TimeUnit.SECONDS);
 
-            if (configs == null || configs.isEmpty()) {
-                logger.error("No configurations found for scheduled run");
-                return;
+        try {
+            AuthConfig config = configCache.find(authId);
+            if (config == null) {
+                config = configStorage.findConfig(authId);
             }
+            if (config == null) {
+                logger.info("{} no longer has a configuration, skipping", userId);
+                workQueue.complete(item, "CONFIG_REMOVED");
+            } else if (item.getAttempts() > maxAttempts) {
+                // Reclaimed after a crash on the last allowed attempt
+                deadLetter(item, userId, "ERROR", RunResult.error("ERROR: Run did not finish after "
+                        + maxAttempts + " attempts (worker lost)", null));
+            } else {
+                UserOutcome outcome = processUser(config, userId, item);
+                RunResult result = outcome.result;
+                if (outcome == LEASE_LOST) {
+                    // Another node may own the row now; leave it to that node
+                    logger.warn("{} skipped: lease on queue item {} was lost before submission", userId, item.getId());
+                } else if (result == null || result.isSuccess()) {
+                    workQueue.complete(item, outcome.label);
+                } else if (result.isRetryable() && item.getAttempts() < maxAttempts) {
+                    long delay = retryDelaySeconds(item.getAttempts());
+                    logger.warn("{} attempt {}/{} failed, retrying in {} s: {}", userId, item.getAttempts(),
+                            maxAttempts, delay, result.getMessage());
+                    workQueue.retryLater(item, outcome.label, result.getMessage(), delay);
+                } else {
+                    deadLetter(item, userId, outcome.label, result);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Unexpected error processing queue item {}", item.getId(), e);
+            workQueue.retryLater(item, "ERROR", e.getMessage(), retryDelaySeconds(item.getAttempts()));
+        } finally {
+            renewal.cancel(false);
+        }
 
-            logger.info("Found {} user(s) to process. Processing sequentially...", configs.size());
+        sendSummaryIfFinished(item.getRunDate());
+    }
 
-            int successCount = 0;
-            int failCount = 0;
+    private long retryDelaySeconds(int attempt) {
+        return Backoff.equalJitterSeconds(retryBaseDelaySeconds, retryMaxDelaySeconds, attempt);
+    }
 
-            for (int i = 0; i < configs.size(); i++) {
-                com.kalvium.model.AuthConfig config = configs.get(i);
-                logger.info("=== Processing user {}/{} ===", (i + 1), configs.size());
+    private void deadLetter(WorkQueueService.QueueItem item, String userId, String label, RunResult result) {
+        logger.error("✗ {} moved to dead-letter after {} attempt(s): {}", userId, item.getAttempts(), result.getMessage());
+        workQueue.deadLetter(item, label, result.getMessage());
+        emailService.sendErrorNotification(item.getRunDate(), userId, result);
+    }
 
-                try {
-                    logger.info("Starting worklog submission for user {}/{}", (i + 1), configs.size());
+    private void sendSummaryIfFinished(LocalDate runDate) {
+        if (!workQueue.claimSummary(runDate)) {
+            return;
+        }
 
-                    String result = worklogService.submitWorklog(config);
+        Map<String, Integer> counts = workQueue.getRunCounts(runDate);
+        int success = counts.getOrDefault(WorkQueueService.Status.DONE.name(), 0);
+        int failed = counts.getOrDefault(WorkQueueService.Status.DEAD.name(), 0);
+        int total = success + failed;
 
-                    logger.info("User {}/{} Result: {}", (i + 1), configs.size(),
-                        result.length() > 200 ? result.substring(0, 200) + "..." : result);
+        logger.info("=== Processing Summary for {}: {} successful, {} failed out of {} total users ===",
+                runDate, success, failed, total);
+        logger.info("=== Outcome Summary: {} ===", counts);
 
-                    if (result.startsWith("SUCCESS")) {
-                        successCount++;
-                        logger.info("✓ User {}/{} worklog submitted successfully", (i + 1), configs.size());
+        if (total > 0) {
+            emailService.sendDeploymentSummary(runDate, total, success, failed);
+        }
 
-                        String userId = "User " + (i + 1) + "/" + configs.size();
-                        emailService.sendSuccessNotification(userId, result);
-                    } else {
-                        failCount++;
-                        logger.error("✗ User {}/{} worklog submission failed", (i + 1), configs.size());
-                        logger.error("Full error for user {}/{}: {}", (i + 1), configs.size(), result);
+        logger.info("=== Scheduled Worklog Automation Finished at {} ===",
+                LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+    }
 
-                        String userId = "User " + (i + 1) + "/" + configs.size();
-                        String errorMessage = result.startsWith("ERROR:") ? result : "ERROR: " + result;
-                        emailService.sendErrorNotification(userId, errorMessage, result);
-                    }
-                } catch (Exception e) {
-                    failCount++;
-                    logger.error("✗ Exception processing user {}/{}", (i + 1), configs.size());
-                    logger.error("Exception details: {}", e.getMessage(), e);
-
-                    String userId = "User " + (i + 1) + "/" + configs.size();
-                    String errorMessage = "Exception occurred: " + e.getMessage();
-                    String stackTrace = e.getClass().getName() + ": " + e.getMessage();
-                    emailService.sendErrorNotification(userId, errorMessage, stackTrace);
-                }
+    private static class UserOutcome {
+        private final String label;
+        private final RunResult result;
 
-                if (i < configs.size() - 1) {
-                    try {
-                        logger.info("Waiting 10 seconds before processing next user to ensure cleanup...");
-                        Thread.sleep(10000);
-                        logger.info("Ready to process next user");
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        logger.warn("Delay interrupted");
-                    }
-                }
+        UserOutcome(String label, RunResult result) {
+            this.label = label;
+            this.result = result;
+        }
+    }
+
+    private static final UserOutcome LEASE_LOST = new UserOutcome("LEASE_LOST", null);
+
+    /**
+     * Run one attempt for a user. Success emails are queued here; failures are
+     * returned to the caller, which decides between retrying and dead-lettering.
+     */
+    @SuppressWarnings("UseSpecificCatch")
+    private UserOutcome processUser(AuthConfig config, String userId, WorkQueueService.QueueItem item) {
+        LocalDate runDate = item.getRunDate();
+        logger.info("=== Processing {} ===", userId);
+
+        try {
+            PreflightService.Result preflight = preflightService.check(config);
+            String label = preflight.getStatus().name();
+            logger.info("{} preflight: {}", userId, preflight);
+
+            List<String> preflightSteps = new ArrayList<>(List.of("Preflight: " + preflight));
+            if (preflight.getStatus() == PreflightService.Status.SESSION_EXPIRED) {
+                return new UserOutcome(label, RunResult.error(
+                        "ERROR: Session expired - please update your Kalvium cookies", preflightSteps)
+                        .withFailureKind(RunResult.FailureKind.TERMINAL)
+                        .addTiming("preflight", preflight.getLatencyMillis()));
+            }
+            if (preflight.getStatus() == PreflightService.Status.NOTHING_PENDING) {
+                RunResult result = RunResult.success("SUCCESS: No pending worklogs found to submit.", preflightSteps)
+                        .addTiming("preflight", preflight.getLatencyMillis());
+                emailService.sendSuccessNotification(runDate, userId, result);
+                return new UserOutcome(label, result);
             }
 
-            logger.info("=== Processing Summary: {} successful, {} failed out of {} total users ===",
-                    successCount, failCount, configs.size());
+            if (!item.isLeaseHeld()) {
+                return LEASE_LOST;
+            }
+            RunResult result = worklogService.submitWorklog(config, preflight);
 
-            emailService.sendDeploymentSummary(configs.size(), successCount, failCount);
+            logger.info("{} Result: {} in {} ms ({} steps, {} screenshots)", userId, result.getMessage(),
+                    result.getDurationMillis(), result.getSteps().size(), result.getScreenshots().size());
 
+            if (result.isSuccess()) {
+                logger.info("✓ {} worklog submitted successfully", userId);
+                emailService.sendSuccessNotification(runDate, userId, result);
+            } else {
+                logger.error("✗ {} worklog submission failed ({})", userId, result.getFailureKind());
+                logger.error("Full error for {}: {}", userId, result.describe());
+            }
+            return new UserOutcome(label, result);
         } catch (Exception e) {
-            logger.error("Error during scheduled worklog submission", e);
+            logger.error("✗ Exception processing {}", userId);
+            logger.error("Exception details: {}", e.getMessage(), e);
+
+            return new UserOutcome("ERROR", RunResult.error("Exception occurred: " + e.getMessage(),
+                    new ArrayList<>(List.of(e.getClass().getName() + ": " + e.getMessage())))
+                    .withFailureKind(RunResult.FailureKind.RETRYABLE));
         }
+    }
 
-        logger.info("=== Scheduled Worklog Automation Finished at {} ===",
-                LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+    @Scheduled(cron = "${screenshot.retention.cron:0 15 2 * * *}", zone = "UTC")
+    @SuppressWarnings("UseSpecificCatch")
+    public void applyScreenshotRetention() {
+        try {
+            screenshotStore.applyRetention();
+        } catch (Exception e) {
+            logger.error("Error applying screenshot retention", e);
+        }
     }
 
     @Scheduled(cron = "0 0 */6 * * *", zone = "UTC")
@@ -298,6 +531,14 @@ public class WorklogScheduler {
         return freedBytes;
     }
 
+    /**
+     * The resolved chromedriver is pinned and reused across restarts, so it must survive cache cleanup.
+     */
+    private boolean isActiveDriver(Path path) {
+        String activeDriver = System.getProperty("webdriver.chrome.driver");
+        return activeDriver != null && path.toAbsolutePath().equals(Paths.get(activeDriver).toAbsolutePath());
+    }
+
     private long cleanupWebDriverCache() {
         long freedBytes = 0;
         try {
@@ -313,6 +554,7 @@ public class WorklogScheduler {
                     try (Stream<Path> files = Files.walk(cachePath)) {
                         freedBytes += files
                                 .filter(Files::isRegularFile)
+                                .filter(path -> !isActiveDriver(path))
                                 .filter(path -> {
                                     try {
                                         long ageInDays = (System.currentTimeMillis() -
@@ -0,0 +1,426 @@
+package com.kalvium.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.PageLoadStrategy;
+import org.openqa.selenium.SessionNotCreatedException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.github.bonigarcia.wdm.WebDriverManager;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Keeps a small set of launched Chrome sessions around so consecutive users
+ * do not each pay for a cold browser start. Sessions are reset between users
+ * and recycled after a fixed number of uses or when they stop responding.
+ */
+@Service
+public class ChromeDriverPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChromeDriverPool.class);
+    private static final int PAGE_LOAD_TIMEOUT_SECONDS = 60;
+
+    @Autowired
+    private ChromeProcessManager processManager;
+
+    @Value("${chrome.headless:true}")
+    private boolean chromeHeadless;
+
+    @Value("${chrome.pool.size:1}")
+    private int poolSize;
+
+    @Value("${chrome.pool.max-uses:20}")
+    private int maxUses;
+
+    @Value("${chrome.pool.acquire-timeout-seconds:300}")
+    private int acquireTimeoutSeconds;
+
+    @Value("${chrome.pool.idle-timeout-minutes:10}")
+    private int idleTimeoutMinutes;
+
+    @Value("${chrome.driver.path:}")
+    private String driverPath;
+
+    @Value("${chrome.driver.pin-file:/app/data/chromedriver.path}")
+    private String driverPinFile;
+
+    private final BlockingQueue<Session> idleSessions = new LinkedBlockingDeque<>();
+    private final AtomicInteger liveSessions = new AtomicInteger();
+    private final AtomicInteger sessionIds = new AtomicInteger();
+    private final AtomicLong acquireCount = new AtomicLong();
+    private final AtomicLong releaseCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong recycledCount = new AtomicLong();
+    private final AtomicLong unhealthyCount = new AtomicLong();
+    private final AtomicLong idleEvictedCount = new AtomicLong();
+    private final AtomicLong totalAcquireWaitMillis = new AtomicLong();
+    private volatile boolean driverResolved = false;
+    private volatile boolean driverPinnedFromFile = false;
+
+    public static class Session {
+        private final int id;
+        private final WebDriver driver;
+        private final ChromeProcessManager.ManagedBrowser browser;
+        private final long createdAt;
+        private int uses;
+        private long lastReleasedAt;
+
+        Session(int id, ChromeProcessManager.ManagedBrowser browser) {
+            this.id = id;
+            this.browser = browser;
+            this.driver = browser.getDriver();
+            this.createdAt = System.currentTimeMillis();
+            this.lastReleasedAt = this.createdAt;
+        }
+
+        public int getId() { return id; }
+        public WebDriver getDriver() { return driver; }
+        public int getUses() { return uses; }
+    }
+
+    public Session acquire() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        long deadline = start + TimeUnit.SECONDS.toMillis(acquireTimeoutSeconds);
+        Session session = null;
+
+        while (session == null) {
+            Session candidate = idleSessions.poll();
+
+            if (candidate == null && reserveSlot()) {
+                try {
+                    candidate = createSession();
+                } catch (RuntimeException e) {
+                    liveSessions.decrementAndGet();
+                    throw e;
+                }
+            } else if (candidate == null) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new IllegalStateException("Timed out after " + acquireTimeoutSeconds
+                            + "s waiting for a free Chrome session");
+                }
+                candidate = idleSessions.poll(remaining, TimeUnit.MILLISECONDS);
+                if (candidate == null) {
+                    continue;
+                }
+            }
+
+            if (candidate.uses > 0 && !isHealthy(candidate)) {
+                unhealthyCount.incrementAndGet();
+                logger.warn("Chrome session #{} failed health check, replacing it", candidate.id);
+                destroySession(candidate);
+                continue;
+            }
+            session = candidate;
+        }
+
+        session.uses++;
+        long waited = System.currentTimeMillis() - start;
+        acquireCount.incrementAndGet();
+        totalAcquireWaitMillis.addAndGet(waited);
+        logger.info("Acquired Chrome session #{} (use {}/{}) in {} ms", session.id, session.uses, maxUses, waited);
+        return session;
+    }
+
+    public void release(Session session) {
+        if (session == null) {
+            return;
+        }
+        releaseCount.incrementAndGet();
+
+        if (session.uses >= maxUses) {
+            recycledCount.incrementAndGet();
+            logger.info("Chrome session #{} reached {} uses, recycling", session.id, session.uses);
+            destroySession(session);
+            return;
+        }
+
+        if (!resetSession(session)) {
+            unhealthyCount.incrementAndGet();
+            logger.warn("Chrome session #{} could not be reset, discarding", session.id);
+            destroySession(session);
+            return;
+        }
+
+        session.lastReleasedAt = System.currentTimeMillis();
+        idleSessions.offer(session);
+    }
+
+    /**
+     * Launches sessions up to the configured pool size ahead of time.
+     */
+    public int warmUp() {
+        int started = 0;
+        while (reserveSlot()) {
+            try {
+                idleSessions.offer(createSession());
+                started++;
+            } catch (RuntimeException e) {
+                liveSessions.decrementAndGet();
+                logger.warn("Could not pre-launch Chrome session: {}", e.getMessage());
+                break;
+            }
+        }
+        return started;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long acquired = acquireCount.get();
+        stats.put("poolSize", poolSize);
+        stats.put("maxUses", maxUses);
+        stats.put("liveSessions", liveSessions.get());
+        stats.put("idleSessions", idleSessions.size());
+        stats.put("inUseSessions", liveSessions.get() - idleSessions.size());
+        stats.put("acquired", acquired);
+        stats.put("released", releaseCount.get());
+        stats.put("created", createdCount.get());
+        stats.put("recycled", recycledCount.get());
+        stats.put("unhealthy", unhealthyCount.get());
+        stats.put("idleEvicted", idleEvictedCount.get());
+        stats.put("avgAcquireWaitMillis", acquired > 0 ? totalAcquireWaitMillis.get() / acquired : 0);
+        stats.put("processes", processManager.getStats());
+        return stats;
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void evictIdleSessions() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(idleTimeoutMinutes);
+        int size = idleSessions.size();
+        for (int i = 0; i < size; i++) {
+            Session session = idleSessions.poll();
+            if (session == null) {
+                break;
+            }
+            if (session.lastReleasedAt < cutoff) {
+                idleEvictedCount.incrementAndGet();
+                logger.info("Closing Chrome session #{} after {} minutes idle", session.id, idleTimeoutMinutes);
+                destroySession(session);
+            } else {
+                idleSessions.offer(session);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Session session;
+        while ((session = idleSessions.poll()) != null) {
+            destroySession(session);
+        }
+    }
+
+    private boolean reserveSlot() {
+        while (true) {
+            int current = liveSessions.get();
+            if (current >= poolSize) {
+                return false;
+            }
+            if (liveSessions.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private Session createSession() {
+        resolveDriver();
+        int id = sessionIds.incrementAndGet();
+        ChromeProcessManager.ManagedBrowser browser;
+        try {
+            browser = processManager.launch(createOptimizedChromeOptions(), id);
+        } catch (SessionNotCreatedException e) {
+            if (!driverPinnedFromFile) {
+                throw e;
+            }
+            // Chrome was upgraded since the driver was pinned; resolve a matching one once
+            logger.warn("Pinned chromedriver failed to start Chrome, re-resolving: {}", e.getMessage());
+            unpinDriver();
+            resolveDriver();
+            browser = processManager.launch(createOptimizedChromeOptions(), id);
+        }
+        WebDriver driver = browser.getDriver();
+        driver.manage().timeouts().pageLoadTimeout(Duration.ofSeconds(PAGE_LOAD_TIMEOUT_SECONDS));
+        driver.manage().timeouts().scriptTimeout(Duration.ofSeconds(30));
+        driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(5));
+
+        Session session = new Session(id, browser);
+        createdCount.incrementAndGet();
+        logger.info("Launched Chrome session #{} ({} live)", session.id, liveSessions.get());
+        return session;
+    }
+
+    /**
+     * Use chrome.driver.path or the path pinned by an earlier boot when the binary is still
+     * there; only fall back to WebDriverManager (which needs the network) when neither works.
+     */
+    private synchronized void resolveDriver() {
+        if (driverResolved) {
+            return;
+        }
+        if (driverPath != null && !driverPath.isBlank() && Files.isExecutable(Paths.get(driverPath))) {
+            System.setProperty(ChromeDriverService.CHROME_DRIVER_EXE_PROPERTY, driverPath);
+            logger.info("Using configured chromedriver {}", driverPath);
+            driverResolved = true;
+            return;
+        }
+
+        Path pinFile = Paths.get(driverPinFile);
+        try {
+            if (Files.exists(pinFile)) {
+                String pinned = Files.readString(pinFile, StandardCharsets.UTF_8).trim();
+                if (!pinned.isEmpty() && Files.isExecutable(Paths.get(pinned))) {
+                    System.setProperty(ChromeDriverService.CHROME_DRIVER_EXE_PROPERTY, pinned);
+                    logger.info("Using pinned chromedriver {}", pinned);
+                    driverPinnedFromFile = true;
+                    driverResolved = true;
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read chromedriver pin file {}: {}", pinFile, e.getMessage());
+        }
+
+        WebDriverManager manager = WebDriverManager.chromedriver();
+        manager.setup();
+        String resolved = manager.getDownloadedDriverPath();
+        if (resolved != null) {
+            try {
+                Files.createDirectories(pinFile.toAbsolutePath().getParent());
+                Files.writeString(pinFile, resolved, StandardCharsets.UTF_8);
+                logger.info("Pinned chromedriver {} in {}", resolved, pinFile);
+            } catch (IOException e) {
+                logger.warn("Could not pin chromedriver path: {}", e.getMessage());
+            }
+        }
+        driverResolved = true;
+    }
+
+    private synchronized void unpinDriver() {
+        try {
+            Files.deleteIfExists(Paths.get(driverPinFile));
+        } catch (IOException e) {
+            logger.warn("Could not delete chromedriver pin file: {}", e.getMessage());
+        }
+        driverPinnedFromFile = false;
+        driverResolved = false;
+    }
+
+    private boolean isHealthy(Session session) {
+        try {
+            session.driver.getWindowHandle();
+            Object result = ((JavascriptExecutor) session.driver).executeScript("return 1;");
+            return result != null;
+        } catch (Exception e) {
+            logger.debug("Health check failed for Chrome session #{}: {}", session.id, e.getMessage());
+            return false;
+        }
+    }
+
+    @SuppressWarnings("UseSpecificCatch")
+    private boolean resetSession(Session session) {
+        try {
+            ((ChromeDriver) session.driver).executeCdpCommand("Network.clearBrowserCookies", Map.of());
+            session.driver.get("about:blank");
+            return isHealthy(session);
+        } catch (Exception e) {
+            logger.debug("Reset failed for Chrome session #{}: {}", session.id, e.getMessage());
+            return false;
+        }
+    }
+
+    private void destroySession(Session session) {
+        processManager.terminate(session.browser);
+        logger.info("Chrome session #{} closed after {} use(s)", session.id, session.uses);
+        liveSessions.decrementAndGet();
+    }
+
+    private ChromeOptions createOptimizedChromeOptions() {
+        ChromeOptions options = new ChromeOptions();
+
+        if (chromeHeadless) {
+            options.addArguments("--headless=new");
+            logger.info("Running Chrome in headless mode");
+
+            options.addArguments(
+                    "--no-sandbox",
+                    "--disable-setuid-sandbox",
+                    "--disable-dev-shm-usage",
+                    "--window-size=1024,768",
+                    "--js-flags=--max-old-space-size=128",
+                    "--single-process",
+                    "--disable-gpu",
+                    "--disable-software-rasterizer",
+                    "--disable-site-isolation-trials",
+                    "--disable-ipc-flooding-protection",
+                    "--memory-pressure-off",
+                    "--disable-breakpad",
+                    "--disable-features=VizDisplayCompositor,TranslateUI,BlinkGenPropertyTrees",
+                    "--renderer-process-limit=1",
+                    "--disable-partial-raster",
+                    "--disable-skia-runtime-opts",
+                    "--disable-logging",
+                    "--disable-infobars",
+                    "--disable-notifications",
+                    "--disable-popup-blocking",
+                    "--disable-save-password-bubble",
+                    "--disable-translate",
+                    "--no-default-browser-check",
+                    "--aggressive-cache-discard",
+                    "--disable-cache",
+                    "--disable-application-cache",
+                    "--disk-cache-size=1"
+            );
+        } else {
+            logger.info("Running Chrome in visible mode (for local debugging)");
+            options.addArguments("--window-size=1280,720");
+        }
+
+        options.addArguments(
+                "--disable-blink-features=AutomationControlled",
+                "--disable-extensions",
+                "--disable-background-networking",
+                "--disable-default-apps",
+                "--disable-sync",
+                "--no-first-run",
+                "--disable-crash-reporter",
+                "--ignore-certificate-errors",
+                "--remote-allow-origins=*",
+                "--disable-plugins",
+                "--disable-background-timer-throttling",
+                "--disable-backgrounding-occluded-windows",
+                "--disable-renderer-backgrounding",
+                "--disable-client-side-phishing-detection",
+                "--disable-hang-monitor",
+                "--disable-prompt-on-repost",
+                "--disable-domain-reliability",
+                "--disable-component-update"
+        );
+
+        options.setPageLoadStrategy(PageLoadStrategy.EAGER);
+        options.setAcceptInsecureCerts(true);
+
+        return options;
+    }
+}
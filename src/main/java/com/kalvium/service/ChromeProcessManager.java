@@ -0,0 +1,298 @@
+package com.kalvium.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Launches Chrome with a private profile directory and tracks the exact
+ * chromedriver and Chrome processes it starts, so a browser can be torn down
+ * without touching any other run's processes or files.
+ */
+@Component
+public class ChromeProcessManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChromeProcessManager.class);
+    private static final long GRACEFUL_EXIT_MILLIS = 3000;
+
+    @Value("${chrome.profile.root:${java.io.tmpdir}/worklog-chrome}")
+    private String profileRoot;
+
+    private final Map<Long, ManagedBrowser> active = new ConcurrentHashMap<>();
+    private final AtomicLong launchedCount = new AtomicLong();
+    private final AtomicLong terminatedCount = new AtomicLong();
+    private final AtomicLong forcedKillCount = new AtomicLong();
+    private final AtomicLong leakedProcessCount = new AtomicLong();
+    private final AtomicLong profileDeleteFailures = new AtomicLong();
+    private final AtomicLong staleProfilesRemoved = new AtomicLong();
+    private volatile int untrackedProcesses;
+
+    public static class ManagedBrowser {
+        private final ChromeDriver driver;
+        private final Path profileDir;
+        private final ProcessHandle driverProcess;
+
+        ManagedBrowser(ChromeDriver driver, Path profileDir, ProcessHandle driverProcess) {
+            this.driver = driver;
+            this.profileDir = profileDir;
+            this.driverProcess = driverProcess;
+        }
+
+        public ChromeDriver getDriver() { return driver; }
+        public Path getProfileDir() { return profileDir; }
+
+        public long getDriverPid() {
+            return driverProcess != null ? driverProcess.pid() : -1;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            Files.createDirectories(Paths.get(profileRoot));
+            removeStaleProfiles();
+        } catch (IOException e) {
+            logger.warn("Could not prepare Chrome profile root {}: {}", profileRoot, e.getMessage());
+        }
+    }
+
+    /**
+     * Start chromedriver and Chrome with a fresh profile directory for this browser only.
+     */
+    public ManagedBrowser launch(ChromeOptions options, int sessionId) {
+        Path profileDir;
+        try {
+            profileDir = Files.createTempDirectory(Paths.get(profileRoot), "session-" + sessionId + "-");
+        } catch (IOException e) {
+            throw new RuntimeException("Could not create Chrome profile directory", e);
+        }
+        options.addArguments("--user-data-dir=" + profileDir);
+
+        ChromeDriverService service = new ChromeDriverService.Builder().usingAnyFreePort().build();
+        ChromeDriver driver;
+        try {
+            driver = new ChromeDriver(service, options);
+        } catch (RuntimeException e) {
+            service.stop();
+            deleteProfile(profileDir);
+            throw e;
+        }
+
+        ProcessHandle driverProcess = findDriverProcess(service.getUrl().getPort()).orElse(null);
+        ManagedBrowser browser = new ManagedBrowser(driver, profileDir, driverProcess);
+        if (driverProcess != null) {
+            active.put(driverProcess.pid(), browser);
+            logger.info("Chrome session #{} runs under chromedriver PID {} ({} Chrome process(es)), profile {}",
+                    sessionId, driverProcess.pid(), driverProcess.descendants().count(), profileDir.getFileName());
+        } else {
+            logger.warn("Could not find chromedriver PID for session #{}; teardown will match by profile only", sessionId);
+        }
+        launchedCount.incrementAndGet();
+        return browser;
+    }
+
+    /**
+     * Quit the browser, then make sure every process it started is gone and its
+     * profile directory is deleted. Only this browser's processes are touched.
+     */
+    @SuppressWarnings("UseSpecificCatch")
+    public void terminate(ManagedBrowser browser) {
+        Set<ProcessHandle> tree = processTree(browser);
+
+        try {
+            browser.driver.quit();
+        } catch (Exception e) {
+            logger.warn("Error quitting Chrome (profile {}): {}", browser.profileDir.getFileName(), e.getMessage());
+        }
+
+        List<ProcessHandle> survivors = awaitExit(tree, GRACEFUL_EXIT_MILLIS);
+        if (!survivors.isEmpty()) {
+            forcedKillCount.addAndGet(survivors.size());
+            logger.warn("{} process(es) of profile {} survived quit, killing PIDs {}", survivors.size(),
+                    browser.profileDir.getFileName(), survivors.stream().map(ProcessHandle::pid).collect(Collectors.toList()));
+            survivors.forEach(ProcessHandle::destroyForcibly);
+            List<ProcessHandle> leaked = awaitExit(survivors, GRACEFUL_EXIT_MILLIS);
+            if (!leaked.isEmpty()) {
+                leakedProcessCount.addAndGet(leaked.size());
+                logger.error("Could not kill PIDs {}", leaked.stream().map(ProcessHandle::pid).collect(Collectors.toList()));
+            }
+        }
+
+        if (browser.driverProcess != null) {
+            active.remove(browser.driverProcess.pid());
+        }
+        deleteProfile(browser.profileDir);
+        terminatedCount.incrementAndGet();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("activeBrowsers", active.size());
+        stats.put("trackedPids", active.values().stream().mapToLong(b -> processTree(b).size()).sum());
+        stats.put("launched", launchedCount.get());
+        stats.put("terminated", terminatedCount.get());
+        stats.put("forcedKills", forcedKillCount.get());
+        stats.put("leakedProcesses", leakedProcessCount.get());
+        stats.put("untrackedProcesses", untrackedProcesses);
+        stats.put("profileDeleteFailures", profileDeleteFailures.get());
+        stats.put("staleProfilesRemoved", staleProfilesRemoved.get());
+        return stats;
+    }
+
+    /**
+     * Resident memory of every tracked chromedriver and Chrome process, read from /proc.
+     * Returns -1 where /proc is not available.
+     */
+    public long getChromeRssBytes() {
+        if (!Files.isDirectory(Paths.get("/proc/self"))) {
+            return -1;
+        }
+        Set<Long> pids = new LinkedHashSet<>();
+        for (ManagedBrowser browser : active.values()) {
+            processTree(browser).forEach(p -> pids.add(p.pid()));
+        }
+        long total = 0;
+        for (long pid : pids) {
+            total += readRssBytes(pid);
+        }
+        return total;
+    }
+
+    private long readRssBytes(long pid) {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc", String.valueOf(pid), "status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Process exited between listing and reading
+        }
+        return 0;
+    }
+
+    /**
+     * Count chrome/chromedriver processes started by this JVM that no live browser owns.
+     * They are reported, not killed, since ownership cannot be proven.
+     */
+    @Scheduled(fixedDelay = 300000)
+    public void scanForLeaks() {
+        Set<Long> owned = new LinkedHashSet<>();
+        for (ManagedBrowser browser : active.values()) {
+            processTree(browser).forEach(p -> owned.add(p.pid()));
+        }
+        List<ProcessHandle> untracked = ProcessHandle.current().descendants()
+                .filter(p -> isChromeProcess(p) && !owned.contains(p.pid()))
+                .collect(Collectors.toList());
+        untrackedProcesses = untracked.size();
+        if (!untracked.isEmpty()) {
+            logger.warn("{} untracked Chrome process(es): {}", untracked.size(),
+                    untracked.stream().map(ProcessHandle::pid).collect(Collectors.toList()));
+        }
+    }
+
+    private Set<ProcessHandle> processTree(ManagedBrowser browser) {
+        Set<ProcessHandle> tree = new LinkedHashSet<>();
+        if (browser.driverProcess != null) {
+            tree.add(browser.driverProcess);
+            browser.driverProcess.descendants().forEach(tree::add);
+        }
+        // Chrome processes re-parented after chromedriver died are still found by their profile flag
+        String profileFlag = "--user-data-dir=" + browser.profileDir;
+        ProcessHandle.allProcesses()
+                .filter(p -> p.info().commandLine().map(cmd -> cmd.contains(profileFlag)).orElse(false))
+                .forEach(tree::add);
+        return tree;
+    }
+
+    private List<ProcessHandle> awaitExit(Iterable<ProcessHandle> processes, long timeoutMillis) {
+        List<CompletableFuture<ProcessHandle>> exits = new ArrayList<>();
+        for (ProcessHandle process : processes) {
+            if (process.isAlive()) {
+                exits.add(process.onExit());
+            }
+        }
+        try {
+            CompletableFuture.allOf(exits.toArray(new CompletableFuture<?>[0])).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.debug("Not all Chrome processes exited within {} ms", timeoutMillis);
+        }
+
+        List<ProcessHandle> alive = new ArrayList<>();
+        for (ProcessHandle process : processes) {
+            if (process.isAlive()) {
+                alive.add(process);
+            }
+        }
+        return alive;
+    }
+
+    private Optional<ProcessHandle> findDriverProcess(int port) {
+        String portFlag = "--port=" + port;
+        return ProcessHandle.current().children()
+                .filter(p -> p.info().commandLine().map(cmd -> cmd.contains("chromedriver") && cmd.contains(portFlag))
+                        .orElse(false))
+                .findFirst();
+    }
+
+    private boolean isChromeProcess(ProcessHandle process) {
+        return process.info().command()
+                .map(cmd -> {
+                    String name = Paths.get(cmd).getFileName().toString().toLowerCase();
+                    return name.contains("chrome");
+                })
+                .orElse(false);
+    }
+
+    private void removeStaleProfiles() throws IOException {
+        // Directories left behind by a previous JVM that crashed; nothing in this JVM owns them yet
+        try (Stream<Path> dirs = Files.list(Paths.get(profileRoot))) {
+            dirs.filter(Files::isDirectory).forEach(dir -> {
+                if (deleteProfile(dir)) {
+                    staleProfilesRemoved.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    private boolean deleteProfile(Path profileDir) {
+        try (Stream<Path> paths = Files.walk(profileDir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(path);
+            }
+            return true;
+        } catch (IOException e) {
+            profileDeleteFailures.incrementAndGet();
+            logger.warn("Could not delete Chrome profile {}: {}", profileDir, e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.kalvium.service;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import com.kalvium.model.AuthConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Read-through cache of every user's configuration. The whole worklog_config table
+ * is loaded at once and kept for config.cache.ttl-seconds. Writes through
+ * {@link SupabaseConfigStorageService} invalidate it. Other instances are told with
+ * a Postgres NOTIFY on {@value #CHANNEL}.
+ *
+ * The LISTEN side uses its own connection outside the two-connection Hikari pool.
+ * It is opened on the first load, so an instance that never reads configs does not
+ * hold one. While it is down, entries live at most one TTL.
+ */
+@Service
+public class ConfigCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigCache.class);
+    private static final String CHANNEL = "worklog_config_changed";
+
+    @Autowired
+    @Lazy
+    private SupabaseConfigStorageService configStorage;
+
+    @Autowired(required = false)
+    private DataSource dataSource;
+
+    @Value("${config.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${config.cache.listen:true}")
+    private boolean listen;
+
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName() + "-"
+            + UUID.randomUUID().toString().substring(0, 8);
+
+    private volatile Snapshot snapshot;
+    /** Bumped by every invalidation, so a load that raced with one is not cached. */
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong loadFailures = new AtomicLong();
+    private final AtomicLong localInvalidations = new AtomicLong();
+    private final AtomicLong remoteInvalidations = new AtomicLong();
+    private volatile long lastLoadMillis = -1;
+
+    private Thread listener;
+    private volatile boolean listenerConnected;
+    private volatile boolean running = true;
+    private volatile Connection listenConnection;
+
+    private static final class Snapshot {
+        private final List<AuthConfig> configs;
+        private final Map<String, AuthConfig> byId;
+        private final long loadedAt;
+
+        Snapshot(List<AuthConfig> configs) {
+            this.configs = Collections.unmodifiableList(configs);
+            Map<String, AuthConfig> index = new LinkedHashMap<>();
+            for (AuthConfig config : configs) {
+                index.put(config.getAuthSessionId(), config);
+            }
+            this.byId = index;
+            this.loadedAt = System.currentTimeMillis();
+        }
+    }
+
+    /** Every user's configuration, in table order. Loads from the database when stale. */
+    public List<AuthConfig> getAll() {
+        return current().configs;
+    }
+
+    /** A user's configuration, or null if the user has none. */
+    public AuthConfig find(String authSessionId) {
+        return current().byId.get(authSessionId);
+    }
+
+    /**
+     * Reload now, e.g. when pre-warming ahead of the daily run.
+     */
+    public int refresh() {
+        drop();
+        return getAll().size();
+    }
+
+    /**
+     * Drop the cached configs here and tell the other instances to do the same.
+     */
+    public void invalidate() {
+        drop();
+        localInvalidations.incrementAndGet();
+        if (!listen || dataSource == null) {
+            return;
+        }
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT pg_notify(?, ?)")) {
+            pstmt.setString(1, CHANNEL);
+            pstmt.setString(2, nodeId);
+            pstmt.execute();
+        } catch (SQLException e) {
+            logger.warn("Could not notify other instances of a config change: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Cached state only; never touches the database.
+     */
+    public Map<String, Object> getStats() {
+        Snapshot current = snapshot;
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("loaded", current != null);
+        stats.put("users", current != null ? current.configs.size() : null);
+        stats.put("ageSeconds", current != null ? (System.currentTimeMillis() - current.loadedAt) / 1000 : null);
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? null
+                : Math.round(hitCount * 1000.0 / (hitCount + missCount)) / 1000.0);
+        stats.put("loads", loads.get());
+        stats.put("loadFailures", loadFailures.get());
+        stats.put("lastLoadMillis", lastLoadMillis);
+        stats.put("localInvalidations", localInvalidations.get());
+        stats.put("remoteInvalidations", remoteInvalidations.get());
+        stats.put("listening", listenerConnected);
+        return stats;
+    }
+
+    /** Number of users if the configs are cached, otherwise null. */
+    public Integer getCachedUserCount() {
+        Snapshot current = snapshot;
+        return current != null ? current.configs.size() : null;
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (isFresh(current)) {
+            hits.incrementAndGet();
+            return current;
+        }
+        misses.incrementAndGet();
+        return load();
+    }
+
+    private synchronized Snapshot load() {
+        // Another caller may have reloaded while this one waited for the lock
+        Snapshot current = snapshot;
+        if (isFresh(current)) {
+            return current;
+        }
+        startListener();
+        long loadGeneration = generation.get();
+        long start = System.currentTimeMillis();
+        try {
+            current = new Snapshot(configStorage.queryAllConfigs());
+        } catch (SQLException e) {
+            loadFailures.incrementAndGet();
+            throw new RuntimeException("Failed to load configurations from Supabase", e);
+        }
+        if (generation.get() == loadGeneration) {
+            snapshot = current;
+        }
+        loads.incrementAndGet();
+        lastLoadMillis = System.currentTimeMillis() - start;
+        logger.info("Config cache loaded {} user(s) in {} ms", current.configs.size(), lastLoadMillis);
+        return current;
+    }
+
+    private void drop() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    private boolean isFresh(Snapshot current) {
+        return current != null && System.currentTimeMillis() - current.loadedAt < TimeUnit.SECONDS.toMillis(ttlSeconds);
+    }
+
+    private void startListener() {
+        if (!listen || listener != null) {
+            return;
+        }
+        HikariDataSource hikari = dataSource instanceof HikariDataSource h ? h : null;
+        if (hikari == null) {
+            logger.info("Config cache: no Hikari DataSource, relying on the {} s TTL only", ttlSeconds);
+            return;
+        }
+        listener = new Thread(() -> listenLoop(hikari), "config-cache-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    private void listenLoop(HikariDataSource hikari) {
+        long backoffMillis = 5000;
+        while (running) {
+            try (Connection conn = DriverManager.getConnection(hikari.getJdbcUrl(), hikari.getUsername(), hikari.getPassword())) {
+                listenConnection = conn;
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("LISTEN " + CHANNEL);
+                }
+                // Changes made while not listening were missed
+                drop();
+                listenerConnected = true;
+                backoffMillis = 5000;
+                logger.info("Config cache listening for changes on '{}'", CHANNEL);
+
+                PGConnection pg = conn.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(10000);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        if (!nodeId.equals(notification.getParameter())) {
+                            drop();
+                            remoteInvalidations.incrementAndGet();
+                            logger.info("Config cache invalidated by {}", notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    logger.warn("Config cache listener disconnected, retrying in {} s: {}", backoffMillis / 1000, e.getMessage());
+                }
+            } finally {
+                listenerConnected = false;
+                listenConnection = null;
+            }
+            if (!running) {
+                return;
+            }
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            backoffMillis = Math.min(backoffMillis * 2, 60000);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        Connection conn = listenConnection;
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                logger.debug("Error closing config cache listener connection: {}", e.getMessage());
+            }
+        }
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+}
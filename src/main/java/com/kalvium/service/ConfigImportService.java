@@ -0,0 +1,380 @@
+package com.kalvium.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.kalvium.model.AuthConfig;
+
+/**
+ * Bulk import of user configurations from a JSON array, NDJSON or CSV stream.
+ * Records are parsed one at a time and upserted in chunks of config.import.chunk-size,
+ * one transaction per chunk. A chunk the database rejects is retried row by row, so
+ * one bad row does not take its neighbours down with it. The report has one entry
+ * per input record.
+ */
+@Service
+public class ConfigImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigImportService.class);
+    private static final Gson GSON = new Gson();
+
+    @Autowired
+    private SupabaseConfigStorageService configStorage;
+
+    @Value("${config.import.chunk-size:200}")
+    private int chunkSize;
+
+    @Value("${config.import.max-rows:5000}")
+    private int maxRows;
+
+    public enum Format {
+        JSON,
+        NDJSON,
+        CSV;
+
+        /** An explicit format parameter wins over the request's Content-Type; JSON otherwise. */
+        public static Format detect(String format, String contentType) {
+            if (format != null && !format.isBlank()) {
+                try {
+                    return valueOf(format.trim().toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown import format '" + format + "' (json, ndjson or csv)");
+                }
+            }
+            String type = contentType == null ? "" : contentType.toLowerCase(Locale.ROOT);
+            if (type.contains("ndjson") || type.contains("jsonlines") || type.contains("json-seq")) {
+                return NDJSON;
+            }
+            if (type.contains("csv")) {
+                return CSV;
+            }
+            return JSON;
+        }
+    }
+
+    public Map<String, Object> importConfigs(InputStream body, Format format) throws IOException {
+        long start = System.currentTimeMillis();
+        Import run = new Import();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        switch (format) {
+            case JSON -> readJson(reader, run);
+            case NDJSON -> readNdjson(reader, run);
+            case CSV -> readCsv(reader, run);
+        }
+        run.flush();
+
+        Map<String, Object> report = run.report();
+        report.put("format", format.name().toLowerCase(Locale.ROOT));
+        report.put("durationMillis", System.currentTimeMillis() - start);
+        logger.info("Config import ({}): {} row(s), {} created, {} updated, {} invalid, {} failed in {} chunk(s)",
+                format, run.rows, run.created, run.updated, run.invalid, run.failed, run.chunks);
+        return report;
+    }
+
+    private void readJson(BufferedReader reader, Import run) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        try {
+            if (json.peek() == JsonToken.BEGIN_OBJECT) {
+                run.add(toConfig(JsonParser.parseReader(json)), null);
+                return;
+            }
+            json.beginArray();
+            while (json.hasNext()) {
+                JsonElement element = JsonParser.parseReader(json);
+                if (!element.isJsonObject()) {
+                    if (!run.add(null, "Expected a JSON object")) {
+                        return;
+                    }
+                } else if (!run.add(toConfig(element), null)) {
+                    return;
+                }
+            }
+            json.endArray();
+        } catch (JsonParseException | IllegalStateException e) {
+            // The stream cannot be resynchronised after a syntax error; keep what was imported so far
+            run.streamError = "Malformed JSON after row " + run.rows + ": " + e.getMessage();
+        }
+    }
+
+    private void readNdjson(BufferedReader reader, Import run) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            AuthConfig config = null;
+            String error = null;
+            try {
+                JsonElement element = JsonParser.parseString(line);
+                if (element.isJsonObject()) {
+                    config = toConfig(element);
+                } else {
+                    error = "Expected a JSON object";
+                }
+            } catch (JsonParseException e) {
+                error = "Malformed JSON: " + e.getMessage();
+            }
+            if (!run.add(config, error)) {
+                return;
+            }
+        }
+    }
+
+    private void readCsv(BufferedReader reader, Import run) throws IOException {
+        List<String> header = readCsvRecord(reader);
+        if (header == null) {
+            return;
+        }
+        int[] columns = new int[6];
+        Arrays.fill(columns, -1);
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).replace("\uFEFF", "").replaceAll("[_\\-\\s]", "").toLowerCase(Locale.ROOT);
+            switch (name) {
+                case "authsessionid" -> columns[0] = i;
+                case "keycloakidentity" -> columns[1] = i;
+                case "keycloaksession" -> columns[2] = i;
+                case "taskscompleted" -> columns[3] = i;
+                case "challenges" -> columns[4] = i;
+                case "blockers" -> columns[5] = i;
+                default -> { }
+            }
+        }
+        if (columns[0] < 0) {
+            throw new IllegalArgumentException("CSV header must include an authSessionId column");
+        }
+
+        List<String> record;
+        while ((record = readCsvRecord(reader)) != null) {
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                continue;
+            }
+            AuthConfig config = new AuthConfig();
+            config.setAuthSessionId(column(record, columns[0]));
+            config.setKeycloakIdentity(column(record, columns[1]));
+            config.setKeycloakSession(column(record, columns[2]));
+            config.setTasksCompleted(column(record, columns[3]));
+            config.setChallenges(column(record, columns[4]));
+            config.setBlockers(column(record, columns[5]));
+            if (!run.add(config, null)) {
+                return;
+            }
+        }
+    }
+
+    private static String column(List<String> record, int index) {
+        return index >= 0 && index < record.size() ? record.get(index) : null;
+    }
+
+    /**
+     * One RFC 4180 record: comma separated, fields optionally quoted with "" as an
+     * escaped quote, and line breaks allowed inside quoted fields (the worklog texts
+     * are multi-line). Returns null at end of input.
+     */
+    static List<String> readCsvRecord(BufferedReader reader) throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean any = false;
+        int c;
+        while ((c = reader.read()) != -1) {
+            any = true;
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        reader.reset();
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                fields.add(field.toString());
+                return fields;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+        if (!any) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static AuthConfig toConfig(JsonElement element) {
+        return GSON.fromJson(element, AuthConfig.class);
+    }
+
+    private static String validate(AuthConfig config) {
+        if (config == null) {
+            return "Empty record";
+        }
+        if (isBlank(config.getAuthSessionId())) {
+            return "Missing authSessionId";
+        }
+        if (isBlank(config.getKeycloakIdentity())) {
+            return "Missing keycloakIdentity";
+        }
+        if (isBlank(config.getKeycloakSession())) {
+            return "Missing keycloakSession";
+        }
+        return null;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static String mask(String authSessionId) {
+        if (authSessionId == null) {
+            return null;
+        }
+        return authSessionId.length() > 8 ? "..." + authSessionId.substring(authSessionId.length() - 8) : authSessionId;
+    }
+
+    /** State of one import: the current chunk and the per-row results so far. */
+    private class Import {
+        private final List<Map<String, Object>> results = new ArrayList<>();
+        private final List<AuthConfig> pending = new ArrayList<>();
+        private final List<Map<String, Object>> pendingResults = new ArrayList<>();
+        private final Set<String> pendingIds = new HashSet<>();
+        private int rows;
+        private int created;
+        private int updated;
+        private int invalid;
+        private int failed;
+        private int chunks;
+        private boolean truncated;
+        private String streamError;
+
+        /** Returns false once max-rows is reached and the rest of the stream should be ignored. */
+        boolean add(AuthConfig config, String parseError) {
+            if (rows >= maxRows) {
+                truncated = true;
+                return false;
+            }
+            rows++;
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("row", rows);
+            if (config != null && config.getAuthSessionId() != null) {
+                config.setAuthSessionId(config.getAuthSessionId().trim());
+            }
+            result.put("authSessionId", config == null ? null : mask(config.getAuthSessionId()));
+            results.add(result);
+
+            String error = parseError != null ? parseError : validate(config);
+            if (error != null) {
+                result.put("status", "invalid");
+                result.put("message", error);
+                invalid++;
+                return true;
+            }
+
+            // The same user twice in one batch would make the second upsert see stale state
+            if (pendingIds.contains(config.getAuthSessionId())) {
+                flush();
+            }
+            pending.add(config);
+            pendingResults.add(result);
+            pendingIds.add(config.getAuthSessionId());
+            if (pending.size() >= Math.max(1, chunkSize)) {
+                flush();
+            }
+            return true;
+        }
+
+        void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            chunks++;
+            try {
+                record(pendingResults, configStorage.upsertConfigs(pending));
+            } catch (RuntimeException e) {
+                if (pending.size() == 1) {
+                    fail(pendingResults.get(0), e);
+                } else {
+                    logger.warn("Import chunk of {} rejected ({}), retrying row by row", pending.size(), e.getMessage());
+                    for (int i = 0; i < pending.size(); i++) {
+                        try {
+                            record(List.of(pendingResults.get(i)), configStorage.upsertConfigs(List.of(pending.get(i))));
+                        } catch (RuntimeException rowError) {
+                            fail(pendingResults.get(i), rowError);
+                        }
+                    }
+                }
+            }
+            pending.clear();
+            pendingResults.clear();
+            pendingIds.clear();
+        }
+
+        private void record(List<Map<String, Object>> chunkResults, boolean[] createdRows) {
+            for (int i = 0; i < chunkResults.size(); i++) {
+                chunkResults.get(i).put("status", createdRows[i] ? "created" : "updated");
+                if (createdRows[i]) {
+                    created++;
+                } else {
+                    updated++;
+                }
+            }
+        }
+
+        private void fail(Map<String, Object> result, RuntimeException e) {
+            result.put("status", "failed");
+            result.put("message", e.getMessage());
+            failed++;
+        }
+
+        Map<String, Object> report() {
+            Map<String, Object> report = new LinkedHashMap<>();
+            boolean clean = invalid == 0 && failed == 0 && !truncated && streamError == null;
+            report.put("status", clean ? "success" : "partial");
+            report.put("rows", rows);
+            report.put("created", created);
+            report.put("updated", updated);
+            report.put("invalid", invalid);
+            report.put("failed", failed);
+            report.put("chunks", chunks);
+            if (truncated) {
+                report.put("truncated", "Stopped after " + maxRows + " rows (config.import.max-rows)");
+            }
+            if (streamError != null) {
+                report.put("error", streamError);
+            }
+            report.put("results", results);
+            return report;
+        }
+    }
+}
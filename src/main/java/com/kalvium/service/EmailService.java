@@ -1,225 +1,125 @@
 package com.kalvium.service;
 
-import com.resend.Resend;
-import com.resend.core.exception.ResendException;
-import com.resend.services.emails.model.Attachment;
-import com.resend.services.emails.model.CreateEmailOptions;
-import com.resend.services.emails.model.CreateEmailResponse;
-import jakarta.annotation.PostConstruct;
+import com.kalvium.model.RunResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+/**
+ * Renders notification emails and hands them to the {@link NotificationOutbox};
+ * {@link NotificationDispatcher} sends them in the background. With
+ * notification.mode=digest, per-user messages are held and folded into the run
+ * summary, failures first.
+ */
 @Service
 public class EmailService {
 
     private static final Logger logger = LoggerFactory.getLogger(EmailService.class);
-    private static final Pattern SCREENSHOT_PATTERN = Pattern.compile("\\[SCREENSHOT_(\\d+)]([^|]+)\\|([A-Za-z0-9+/=]+)");
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String MODE_DIGEST = "digest";
 
-    private Resend resend;
-
-    @Value("${notification.email}")
-    private String notificationEmail;
+    @Autowired
+    private NotificationOutbox outbox;
 
     @Value("${email.enabled:true}")
     private boolean emailEnabled;
 
-    private final String resendApiKey = "re_KLz77iaH_AcP6jMsCfLHt6RhphLbdeCrn";
-    private final String fromEmail = "onboarding@resend.dev";
-
-    @PostConstruct
-    public void init() {
-        if (resendApiKey != null && !resendApiKey.isEmpty()) {
-            this.resend = new Resend(resendApiKey);
-            logger.info("Resend client initialized successfully");
-        } else {
-            logger.warn("Resend API key not configured, email notifications will be disabled");
-        }
-    }
-
-    private static class ScreenshotData {
-        String description;
-        byte[] imageBytes;
-
-        ScreenshotData(String description, byte[] imageBytes) {
-            this.description = description;
-            this.imageBytes = imageBytes;
-        }
-    }
+    @Value("${notification.mode:per-user}")
+    private String mode;
 
-    public void sendSuccessNotification(String userId, String message) {
+    public void sendSuccessNotification(LocalDate runDate, String userId, RunResult result) {
         if (!emailEnabled) {
             logger.info("Email notifications disabled, skipping success notification for user {}", userId);
             return;
         }
 
-        if (resend == null) {
-            logger.warn("Resend client not initialized, skipping email notification");
-            return;
-        }
-
-        try {
-            logger.info("Attempting to send success notification email to {}", notificationEmail);
-
-            List<ScreenshotData> screenshots = extractScreenshots(message);
-            String cleanMessage = removeScreenshotsFromMessage(message);
-
-            String subject = "Worklog Submission Success - " + getCurrentTimestamp();
-            String htmlBody = buildSuccessEmailHtml(userId, cleanMessage);
-
-            sendEmail(subject, htmlBody, screenshots);
-
-            logger.info("Success notification email sent successfully to {} with {} screenshots",
-                    notificationEmail, screenshots.size());
-        } catch (Exception e) {
-            logger.error("Failed to send success notification email to {}: {} - {}",
-                    notificationEmail, e.getClass().getSimpleName(), e.getMessage());
-            if (e.getCause() != null) {
-                logger.error("Root cause: {} - {}", e.getCause().getClass().getSimpleName(), e.getCause().getMessage());
-            }
-        }
+        String subject = "Worklog Submission Success - " + getCurrentTimestamp();
+        String htmlBody = buildSuccessEmailHtml(userId, result.describe());
+        outbox.enqueue(new NotificationOutbox.Message(runDate, "SUCCESS", userId, false, subject, htmlBody,
+                result.getMessage(), buildAttachments(result.getScreenshots())), isDigest());
     }
 
-    public void sendErrorNotification(String userId, String errorMessage, String steps) {
+    public void sendErrorNotification(LocalDate runDate, String userId, RunResult result) {
         if (!emailEnabled) {
             logger.info("Email notifications disabled, skipping error notification for user {}", userId);
             return;
         }
 
-        if (resend == null) {
-            logger.warn("Resend client not initialized, skipping email notification");
-            return;
-        }
-
-        try {
-            logger.info("Attempting to send error notification email to {}", notificationEmail);
-
-            List<ScreenshotData> screenshots = extractScreenshots(steps);
-            String cleanSteps = removeScreenshotsFromMessage(steps);
-
-            String subject = "Worklog Submission Failed - " + getCurrentTimestamp();
-            String htmlBody = buildErrorEmailHtml(userId, errorMessage, cleanSteps);
-
-            sendEmail(subject, htmlBody, screenshots);
-
-            logger.info("Error notification email sent successfully to {} with {} screenshots",
-                    notificationEmail, screenshots.size());
-        } catch (Exception e) {
-            logger.error("Failed to send error notification email to {}: {} - {}",
-                    notificationEmail, e.getClass().getSimpleName(), e.getMessage());
-            if (e.getCause() != null) {
-                logger.error("Root cause: {} - {}", e.getCause().getClass().getSimpleName(), e.getCause().getMessage());
-            }
-        }
+        String subject = "Worklog Submission Failed - " + getCurrentTimestamp();
+        String htmlBody = buildErrorEmailHtml(userId, result.getMessage(), result.getSteps());
+        outbox.enqueue(new NotificationOutbox.Message(runDate, "ERROR", userId, true, subject, htmlBody,
+                result.getMessage(), buildAttachments(result.getScreenshots())), isDigest());
     }
 
-    public void sendDeploymentSummary(int totalUsers, int successCount, int failCount) {
+    /**
+     * Queue the end-of-run summary. In digest mode it also carries every held
+     * per-user result for the run, failures first, with the failures' screenshots.
+     */
+    public void sendDeploymentSummary(LocalDate runDate, int totalUsers, int successCount, int failCount) {
         if (!emailEnabled) {
             logger.info("Email notifications disabled, skipping deployment summary");
             return;
         }
 
-        if (resend == null) {
-            logger.warn("Resend client not initialized, skipping email notification");
+        String subject = "Worklog Automation Summary - " + getCurrentTimestamp();
+        if (!isDigest()) {
+            outbox.enqueue(new NotificationOutbox.Message(runDate, "SUMMARY", null, failCount > 0, subject,
+                    buildSummaryEmailHtml(totalUsers, successCount, failCount, List.of()), null, null), false);
             return;
         }
 
-        try {
-            logger.info("Attempting to send deployment summary email to {}", notificationEmail);
-
-            String subject = "Worklog Automation Summary - " + getCurrentTimestamp();
-            String htmlBody = buildSummaryEmailHtml(totalUsers, successCount, failCount);
-
-            sendEmail(subject, htmlBody, new ArrayList<>());
-
-            logger.info("Deployment summary email sent successfully to {}", notificationEmail);
-        } catch (Exception e) {
-            logger.error("Failed to send deployment summary email to {}: {} - {}",
-                    notificationEmail, e.getClass().getSimpleName(), e.getMessage());
-            if (e.getCause() != null) {
-                logger.error("Root cause: {} - {}", e.getCause().getClass().getSimpleName(), e.getCause().getMessage());
-            }
-        }
+        List<NotificationOutbox.HeldEntry> held = outbox.listHeld(runDate);
+        String htmlBody = buildSummaryEmailHtml(totalUsers, successCount, failCount, held);
+        outbox.enqueueDigest(new NotificationOutbox.Message(runDate, "DIGEST", null, failCount > 0, subject,
+                htmlBody, null, null), held);
     }
 
-    private void sendEmail(String subject, String htmlBody, List<ScreenshotData> screenshots) throws ResendException {
-        CreateEmailOptions.Builder requestBuilder = CreateEmailOptions.builder()
-                .from(fromEmail)
-                .to(notificationEmail)
-                .subject(subject)
-                .html(htmlBody);
-
-        if (!screenshots.isEmpty()) {
-            List<Attachment> attachments = new ArrayList<>();
-            for (int i = 0; i < screenshots.size(); i++) {
-                ScreenshotData ss = screenshots.get(i);
-                String filename = "screenshot_" + (i + 1) + "_" + sanitizeFilename(ss.description) + ".png";
-                String base64Content = Base64.getEncoder().encodeToString(ss.imageBytes);
-
-                Attachment attachment = Attachment.builder()
-                        .fileName(filename)
-                        .content(base64Content)
-                        .build();
-                attachments.add(attachment);
-                logger.info("Attached screenshot: {}", filename);
-            }
-            requestBuilder.attachments(attachments);
-        }
-
-        CreateEmailOptions request = requestBuilder.build();
-        CreateEmailResponse response = resend.emails().send(request);
-        logger.info("Email sent successfully via Resend. Email ID: {}", response.getId());
+    private boolean isDigest() {
+        return MODE_DIGEST.equalsIgnoreCase(mode);
     }
 
-    private List<ScreenshotData> extractScreenshots(String message) {
-        List<ScreenshotData> screenshots = new ArrayList<>();
-        if (message == null) {
-            return screenshots;
+    List<NotificationOutbox.Attachment> buildAttachments(List<RunResult.Screenshot> screenshots) {
+        List<NotificationOutbox.Attachment> attachments = new ArrayList<>(screenshots.size());
+        for (int i = 0; i < screenshots.size(); i++) {
+            RunResult.Screenshot ss = screenshots.get(i);
+            String filename = "screenshot_" + (i + 1) + "_" + sanitizeFilename(ss.getDescription())
+                    + "." + ss.getFileExtension();
+            attachments.add(new NotificationOutbox.Attachment(filename, ss.getData()));
         }
-
-        Matcher matcher = SCREENSHOT_PATTERN.matcher(message);
-        while (matcher.find()) {
-            try {
-                String description = matcher.group(2).trim();
-                String base64Data = matcher.group(3);
-                byte[] imageBytes = Base64.getDecoder().decode(base64Data);
-                screenshots.add(new ScreenshotData(description, imageBytes));
-                logger.debug("Extracted screenshot: {}", description);
-            } catch (Exception e) {
-                logger.warn("Failed to decode screenshot: {}", e.getMessage());
-            }
-        }
-
-        return screenshots;
+        return attachments;
     }
 
-    private String removeScreenshotsFromMessage(String message) {
-        if (message == null) {
-            return "";
+    /**
+     * Lower-case ASCII letters and digits, with every other run of characters collapsed
+     * into one underscore and no leading or trailing underscore. Single pass, no regex.
+     */
+    static String sanitizeFilename(String name) {
+        StringBuilder out = new StringBuilder(name.length());
+        boolean pendingUnderscore = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = Character.toLowerCase(name.charAt(i));
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                if (pendingUnderscore && out.length() > 0) {
+                    out.append('_');
+                }
+                pendingUnderscore = false;
+                out.append(c);
+            } else {
+                pendingUnderscore = true;
+            }
         }
-        String cleaned = SCREENSHOT_PATTERN.matcher(message).replaceAll("");
-        cleaned = cleaned.replaceAll("\\nSCREENSHOTS:\\n*", "");
-        cleaned = cleaned.replaceAll("\\n{3,}", "\n\n");
-        return cleaned.trim();
-    }
-
-    private String sanitizeFilename(String name) {
-        return name.toLowerCase()
-                .replaceAll("[^a-z0-9]", "_")
-                .replaceAll("_+", "_")
-                .replaceAll("^_|_$", "");
+        return out.toString();
     }
 
-    private String buildSuccessEmailHtml(String userId, String message) {
+    String buildSuccessEmailHtml(String userId, String message) {
         String escapedMessage = escapeHtml(message != null ? message : "Worklog submitted successfully");
         String escapedUserId = escapeHtml(userId != null ? userId : "Unknown");
 
@@ -241,7 +141,7 @@ public class EmailService {
                 "</div>";
     }
 
-    private String buildErrorEmailHtml(String userId, String errorMessage, String steps) {
+    String buildErrorEmailHtml(String userId, String errorMessage, List<String> steps) {
         String escapedUserId = escapeHtml(userId != null ? userId : "Unknown");
         String escapedError = escapeHtml(errorMessage != null ? errorMessage : "Unknown error");
 
@@ -249,7 +149,7 @@ public class EmailService {
         if (steps != null && !steps.isEmpty()) {
             stepsHtml = "<h3>Automation Steps:</h3>" +
                     "<pre style=\"background-color: #fff; padding: 15px; border-radius: 5px; overflow-x: auto; white-space: pre-wrap;\">" +
-                    escapeHtml(steps) + "</pre>";
+                    escapeHtmlLines(steps) + "</pre>";
         }
 
         return "<div style=\"font-family: Arial, sans-serif; max-width: 600px; margin: 0 auto;\">" +
@@ -272,7 +172,8 @@ public class EmailService {
                 "</div>";
     }
 
-    private String buildSummaryEmailHtml(int totalUsers, int successCount, int failCount) {
+    String buildSummaryEmailHtml(int totalUsers, int successCount, int failCount,
+                                 List<NotificationOutbox.HeldEntry> results) {
         String statusColor = successCount == totalUsers ? "#4CAF50" : (failCount == totalUsers ? "#f44336" : "#FF9800");
         String statusText = successCount == totalUsers ? "ALL SUCCESSFUL" : (failCount == totalUsers ? "ALL FAILED" : "PARTIAL SUCCESS");
 
@@ -296,6 +197,7 @@ public class EmailService {
                 "<div style=\"text-align: center; padding: 15px; background-color: " + statusColor + "; color: white; border-radius: 5px;\">" +
                 "<strong>Status: " + statusText + "</strong>" +
                 "</div>" +
+                buildDigestRowsHtml(results) +
                 "</div>" +
                 "<div style=\"background-color: #333; color: white; padding: 10px; text-align: center; font-size: 12px;\">" +
                 "Kalvium Worklog Automation System" +
@@ -303,20 +205,90 @@ public class EmailService {
                 "</div>";
     }
 
-    private String escapeHtml(String text) {
+    /**
+     * One row per user, in the order given (failures first from the outbox).
+     */
+    private String buildDigestRowsHtml(List<NotificationOutbox.HeldEntry> results) {
+        if (results.isEmpty()) {
+            return "";
+        }
+        StringBuilder rows = new StringBuilder(256 + results.size() * 200);
+        rows.append("<h3>Results:</h3><table style=\"width: 100%; border-collapse: collapse;\">");
+        for (NotificationOutbox.HeldEntry entry : results) {
+            String color = entry.isFailed() ? "#f44336" : "#4CAF50";
+            rows.append("<tr><td style=\"padding: 6px; border-bottom: 1px solid #ddd; color: ").append(color)
+                    .append("; font-weight: bold;\">").append(entry.isFailed() ? "FAILED" : "OK").append("</td>")
+                    .append("<td style=\"padding: 6px; border-bottom: 1px solid #ddd;\">")
+                    .append(escapeHtml(entry.getUserLabel())).append("</td>")
+                    .append("<td style=\"padding: 6px; border-bottom: 1px solid #ddd;\">")
+                    .append(escapeHtml(entry.getSummary())).append("</td></tr>");
+        }
+        return rows.append("</table>").toString();
+    }
+
+    /**
+     * Escapes &amp;, &lt;, &gt;, quotes and apostrophes in one pass. Text with nothing
+     * to escape is returned as is.
+     */
+    static String escapeHtml(String text) {
         if (text == null) {
             return "";
         }
-        return text
-                .replace("&", "&amp;")
-                .replace("<", "&lt;")
-                .replace(">", "&gt;")
-                .replace("\"", "&quot;")
-                .replace("'", "&#39;");
+        int first = firstEscapable(text);
+        if (first < 0) {
+            return text;
+        }
+        StringBuilder out = new StringBuilder(text.length() + 16);
+        out.append(text, 0, first);
+        appendEscaped(out, text, first);
+        return out.toString();
+    }
+
+    /**
+     * Same as escaping the lines joined with newlines, without building the joined string.
+     */
+    static String escapeHtmlLines(List<String> lines) {
+        int length = 0;
+        for (String line : lines) {
+            length += line.length() + 1;
+        }
+        StringBuilder out = new StringBuilder(length + 64);
+        for (int i = 0; i < lines.size(); i++) {
+            if (i > 0) {
+                out.append('\n');
+            }
+            appendEscaped(out, lines.get(i), 0);
+        }
+        return out.toString();
+    }
+
+    private static int firstEscapable(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            switch (text.charAt(i)) {
+                case '&', '<', '>', '"', '\'' -> {
+                    return i;
+                }
+                default -> { }
+            }
+        }
+        return -1;
+    }
+
+    private static void appendEscaped(StringBuilder out, String text, int from) {
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&' -> out.append("&amp;");
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '"' -> out.append("&quot;");
+                case '\'' -> out.append("&#39;");
+                default -> out.append(c);
+            }
+        }
     }
 
     private String getCurrentTimestamp() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        return LocalDateTime.now().format(formatter);
+        return LocalDateTime.now().format(TIMESTAMP_FORMAT);
     }
 }
@@ -0,0 +1,122 @@
+package com.kalvium.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.kalvium.util.RunLog;
+import com.kalvium.util.XPathLoader;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Fills the whole worklog form with one call to the bundled js/fill-worklog.js
+ * instead of a locate/scroll/fill/remove round trip per field.
+ */
+@Component
+public class FormFillScript {
+
+    private static final Logger logger = LoggerFactory.getLogger(FormFillScript.class);
+    private static final String SCRIPT_RESOURCE = "js/fill-worklog.js";
+    private static final long ELEMENT_TIMEOUT_MILLIS = 20000;
+
+    private static final List<String> LOCATOR_KEYS = List.of(
+            "dropdown.select.main", "dropdown.button.main", "dropdown.option.first",
+            "tasks.first.item", "tasks.add.more",
+            "challenges.first.item", "challenges.add.more",
+            "blockers.first.item", "blockers.add.more");
+
+    private static final List<String> REQUIRED_FIELDS = List.of("dropdown", "tasks", "challenges", "blockers");
+
+    private String script;
+
+    @PostConstruct
+    public void init() {
+        try (InputStream input = FormFillScript.class.getClassLoader().getResourceAsStream(SCRIPT_RESOURCE)) {
+            if (input == null) {
+                throw new RuntimeException(SCRIPT_RESOURCE + " not found in classpath");
+            }
+            script = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load " + SCRIPT_RESOURCE, e);
+        }
+    }
+
+    /**
+     * Run the in-page fill and record its per-field report in the run log and the locator statistics.
+     * @return true if the dropdown and all three sections were filled
+     */
+    public boolean fill(JavascriptExecutor js, String tasks, String challenges, String blockers, RunLog runLog) {
+        Map<String, List<XPathLoader.Locator>> ranked = new LinkedHashMap<>();
+        Map<String, Object> locators = new LinkedHashMap<>();
+        for (String key : LOCATOR_KEYS) {
+            List<XPathLoader.Locator> candidates = XPathLoader.locators(key);
+            ranked.put(key, candidates);
+            List<Map<String, Object>> serialized = new ArrayList<>();
+            for (XPathLoader.Locator candidate : candidates) {
+                serialized.add(Map.of("css", candidate.isCss(), "value", candidate.selector()));
+            }
+            locators.put(key, serialized);
+        }
+        Map<String, Object> content = Map.of("tasks", tasks, "challenges", challenges, "blockers", blockers);
+
+        Object raw = js.executeAsyncScript(script, locators, content, ELEMENT_TIMEOUT_MILLIS);
+        if (!(raw instanceof Map<?, ?> report)) {
+            runLog.note("WARNING: Bundled fill returned no report");
+            return false;
+        }
+
+        boolean complete = true;
+        for (Map.Entry<?, ?> entry : report.entrySet()) {
+            String field = String.valueOf(entry.getKey());
+            if (!(entry.getValue() instanceof Map<?, ?> status)) {
+                continue;
+            }
+            String outcome = String.valueOf(status.get("status"));
+            String key = status.get("key") != null ? String.valueOf(status.get("key")) : "";
+            // ms is this field's own lookup time; elapsed is since the script started
+            long ms = status.get("ms") instanceof Number n ? n.longValue() : 0;
+            long elapsed = status.get("elapsed") instanceof Number n ? n.longValue() : 0;
+            int index = status.get("index") instanceof Number n ? n.intValue() : -1;
+
+            recordLocatorStats(ranked.get(key), index, ms);
+            runLog.note("Bundled fill " + field + ": " + outcome + " after " + elapsed + " ms"
+                    + (index >= 0 ? ", found in " + ms + " ms" : "")
+                    + (status.get("detail") != null ? " (" + status.get("detail") + ")" : ""),
+                    RunLog.attrs("field", field, "xpathKey", key, "status", outcome));
+
+            if ((REQUIRED_FIELDS.contains(field) || "error".equals(field)) && !"ok".equals(outcome)) {
+                complete = false;
+            }
+        }
+        for (String field : REQUIRED_FIELDS) {
+            if (!report.containsKey(field)) {
+                complete = false;
+            }
+        }
+        logger.debug("Bundled fill report: {}", report);
+        return complete;
+    }
+
+    private void recordLocatorStats(List<XPathLoader.Locator> candidates, int index, long ms) {
+        if (candidates == null) {
+            return;
+        }
+        int missed = index >= 0 ? index : candidates.size();
+        for (int i = 0; i < missed && i < candidates.size(); i++) {
+            candidates.get(i).recordMiss();
+        }
+        if (index >= 0 && index < candidates.size()) {
+            candidates.get(index).recordHit(ms);
+        }
+    }
+}
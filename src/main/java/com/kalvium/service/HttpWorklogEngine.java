@@ -0,0 +1,145 @@
+package com.kalvium.service;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.kalvium.model.AuthConfig;
+import com.kalvium.model.StepEvent;
+import com.kalvium.util.RunLog;
+
+/**
+ * Submits a worklog with direct HTTP calls against the portal API instead of
+ * driving a browser. Endpoint paths are configurable so the engine can be
+ * pointed at a local stub of the portal.
+ */
+@Service
+public class HttpWorklogEngine {
+
+    @Autowired
+    private KalviumPortalClient portalClient;
+
+    @Value("${http.engine.pending-path:/api/worklogs/pending}")
+    private String pendingPath;
+
+    @Value("${http.engine.submit-path:/api/worklogs/{id}/submit}")
+    private String submitPath;
+
+    @Value("${http.engine.work-status:}")
+    private String workStatus;
+
+    public enum Outcome {
+        SUBMITTED,
+        NOTHING_PENDING,
+        SESSION_EXPIRED
+    }
+
+    /**
+     * Thrown when the portal answers in a way the engine does not understand,
+     * which callers treat as a signal to fall back to the browser.
+     */
+    public static class UnsupportedResponseException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public UnsupportedResponseException(String message) {
+            super(message);
+        }
+
+        public UnsupportedResponseException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    public Outcome submit(AuthConfig config, RunLog runLog) {
+        try {
+            runLog.note("Fetching pending worklogs over HTTP...");
+            KalviumPortalClient.PortalResponse pending = portalClient.get(pendingPath, config);
+            recordRequest(runLog, "pending request", pendingPath, pending);
+
+            if (pending.isUnauthorized() || portalClient.isLoginRedirect(pending)) {
+                runLog.note("Session cookies rejected by the portal");
+                return Outcome.SESSION_EXPIRED;
+            }
+            if (!pending.isSuccess()) {
+                throw new UnsupportedResponseException("Unexpected status " + pending.getStatus() + " from " + pendingPath);
+            }
+
+            JsonArray worklogs = parsePendingList(pending.getBody());
+            runLog.note("Found " + worklogs.size() + " pending worklog(s)");
+            if (worklogs.isEmpty()) {
+                return Outcome.NOTHING_PENDING;
+            }
+
+            String worklogId = extractId(worklogs.get(0));
+            String path = submitPath.replace("{id}", worklogId);
+            runLog.note("Submitting worklog " + worklogId + " over HTTP...");
+
+            KalviumPortalClient.PortalResponse submitted = portalClient.postJson(path, buildPayload(config), config);
+            recordRequest(runLog, "submit request", path, submitted);
+
+            if (submitted.isUnauthorized() || portalClient.isLoginRedirect(submitted)) {
+                return Outcome.SESSION_EXPIRED;
+            }
+            if (!submitted.isSuccess()) {
+                throw new UnsupportedResponseException("Unexpected status " + submitted.getStatus() + " from " + path);
+            }
+            return Outcome.SUBMITTED;
+
+        } catch (IOException e) {
+            throw new UnsupportedResponseException("Portal request failed: " + e.getMessage(), e);
+        }
+    }
+
+    static JsonArray parsePendingList(String body) {
+        try {
+            JsonElement root = JsonParser.parseString(body);
+            if (root.isJsonArray()) {
+                return root.getAsJsonArray();
+            }
+            if (root.isJsonObject()) {
+                JsonObject object = root.getAsJsonObject();
+                for (String field : new String[]{"data", "worklogs", "items"}) {
+                    if (object.has(field) && object.get(field).isJsonArray()) {
+                        return object.getAsJsonArray(field);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new UnsupportedResponseException("Pending worklogs response is not JSON", e);
+        }
+        throw new UnsupportedResponseException("Pending worklogs response has no list of worklogs");
+    }
+
+    private String extractId(JsonElement worklog) {
+        if (worklog.isJsonObject() && worklog.getAsJsonObject().has("id")) {
+            return worklog.getAsJsonObject().get("id").getAsString();
+        }
+        throw new UnsupportedResponseException("Pending worklog entry has no id");
+    }
+
+    private String buildPayload(AuthConfig config) {
+        JsonObject payload = new JsonObject();
+        if (workStatus != null && !workStatus.isBlank()) {
+            payload.addProperty("status", workStatus);
+        }
+        payload.addProperty("tasksCompleted", config.getTasksCompleted() != null
+                ? config.getTasksCompleted() : "Need to complete the tasks assigned..");
+        payload.addProperty("challenges", config.getChallenges() != null ? config.getChallenges() : "NA");
+        payload.addProperty("blockers", config.getBlockers() != null ? config.getBlockers() : "NA");
+        return payload.toString();
+    }
+
+    private void recordRequest(RunLog runLog, String name, String path, KalviumPortalClient.PortalResponse response) {
+        long latency = response.getLatencyMillis();
+        runLog.record(name, System.currentTimeMillis() - latency, latency,
+                response.isSuccess() ? StepEvent.Outcome.OK : StepEvent.Outcome.WARNING,
+                name + " returned " + response.getStatus(),
+                RunLog.attrs("path", path, "status", String.valueOf(response.getStatus())));
+    }
+}
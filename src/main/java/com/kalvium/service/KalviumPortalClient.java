@@ -0,0 +1,163 @@
+package com.kalvium.service;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.kalvium.model.AuthConfig;
+import com.kalvium.util.SessionCookies;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Authenticated HTTP access to the Kalvium portal using a user's stored
+ * Keycloak cookies. Redirects are not followed so callers can tell an expired
+ * session (redirect to the login page) apart from a real response.
+ */
+@Component
+public class KalviumPortalClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(KalviumPortalClient.class);
+
+    @Value("${kalvium.base.url:https://kalvium.community}")
+    private String baseUrl;
+
+    private final CloseableHttpClient httpClient;
+
+    public static class PortalResponse {
+        private final int status;
+        private final String body;
+        private final String location;
+        private final long latencyMillis;
+
+        PortalResponse(int status, String body, String location, long latencyMillis) {
+            this.status = status;
+            this.body = body;
+            this.location = location;
+            this.latencyMillis = latencyMillis;
+        }
+
+        public int getStatus() { return status; }
+        public String getBody() { return body; }
+        public String getLocation() { return location; }
+        public long getLatencyMillis() { return latencyMillis; }
+
+        public boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+
+        public boolean isRedirect() {
+            return status >= 300 && status < 400;
+        }
+
+        public boolean isUnauthorized() {
+            return status == 401 || status == 403;
+        }
+    }
+
+    public KalviumPortalClient() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(10);
+        connectionManager.setDefaultMaxPerRoute(5);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofSeconds(5))
+                .setResponseTimeout(Timeout.ofSeconds(30))
+                .build();
+
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .disableRedirectHandling()
+                .disableCookieManagement()
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .evictExpiredConnections()
+                .build();
+    }
+
+    public String getBaseUrl() {
+        return baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    public PortalResponse get(String path, AuthConfig config) throws IOException {
+        return execute(new HttpGet(resolve(path)), config);
+    }
+
+    public PortalResponse postJson(String path, String json, AuthConfig config) throws IOException {
+        HttpPost post = new HttpPost(resolve(path));
+        post.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+        return execute(post, config);
+    }
+
+    /**
+     * Check whether a redirect points away from the portal, i.e. to the Keycloak login page.
+     */
+    public boolean isLoginRedirect(PortalResponse response) {
+        if (!response.isRedirect() || response.getLocation() == null) {
+            return false;
+        }
+        return isLoginUrl(response.getLocation());
+    }
+
+    /**
+     * Whether a URL (absolute or relative to the portal) points at the login flow
+     * rather than the portal itself.
+     */
+    public boolean isLoginUrl(String url) {
+        if (url == null) {
+            return false;
+        }
+        if (url.contains("/protocol/openid-connect/") || url.contains("/login")) {
+            return true;
+        }
+        URI target = URI.create(getBaseUrl()).resolve(url);
+        if (target.getHost() == null || target.getScheme() == null || !target.getScheme().startsWith("http")) {
+            return false;
+        }
+        return !URI.create(getBaseUrl()).getHost().equalsIgnoreCase(target.getHost());
+    }
+
+    private URI resolve(String path) {
+        return URI.create(getBaseUrl() + (path.startsWith("/") ? path : "/" + path));
+    }
+
+    private PortalResponse execute(HttpUriRequestBase request, AuthConfig config) throws IOException {
+        request.setHeader("Cookie", SessionCookies.header(config));
+        request.setHeader("Accept", "application/json, text/html;q=0.9");
+        long start = System.currentTimeMillis();
+
+        return httpClient.execute(request, response -> {
+            String body = response.getEntity() != null ? EntityUtils.toString(response.getEntity()) : "";
+            Header location = response.getFirstHeader("Location");
+            long latency = System.currentTimeMillis() - start;
+            logger.debug("{} {} -> {} in {} ms", request.getMethod(), request.getRequestUri(), response.getCode(), latency);
+            return new PortalResponse(response.getCode(), body, location != null ? location.getValue() : null, latency);
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            logger.warn("Error closing portal HTTP client: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.kalvium.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chromium.HasCdp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Blocks images, fonts and third-party scripts on a Chrome session through the
+ * DevTools protocol, and measures what each page actually fetched so runs with
+ * and without blocking can be compared.
+ */
+@Component
+public class NetworkPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(NetworkPolicy.class);
+
+    private static final String MEASURE_SCRIPT =
+            "var entries = performance.getEntriesByType('resource');" +
+            "var nav = performance.getEntriesByType('navigation')[0];" +
+            "var transfer = 0, decoded = 0;" +
+            "for (var i = 0; i < entries.length; i++) {" +
+            "  transfer += entries[i].transferSize || 0;" +
+            "  decoded += entries[i].decodedBodySize || 0;" +
+            "}" +
+            "if (nav) { transfer += nav.transferSize || 0; decoded += nav.decodedBodySize || 0; }" +
+            "return [entries.length + (nav ? 1 : 0), transfer, decoded," +
+            "  nav ? Math.round(nav.domContentLoadedEventEnd) : -1];";
+
+    @Value("${chrome.network.blocking.enabled:true}")
+    private volatile boolean blockingEnabled;
+
+    @Value("${chrome.network.blocklist:}")
+    private String blocklistProperty;
+
+    @Value("${chrome.network.allowlist:}")
+    private String allowlistProperty;
+
+    private List<String> blockedPatterns = new ArrayList<>();
+
+    private final AtomicLong blockedPages = new AtomicLong();
+    private final AtomicLong blockedRequests = new AtomicLong();
+    private final AtomicLong blockedBytes = new AtomicLong();
+    private final AtomicLong unblockedPages = new AtomicLong();
+    private final AtomicLong unblockedRequests = new AtomicLong();
+    private final AtomicLong unblockedBytes = new AtomicLong();
+
+    public static class PageStats {
+        private final long requests;
+        private final long transferBytes;
+        private final long decodedBytes;
+        private final long domContentLoadedMillis;
+        private final boolean blocking;
+
+        PageStats(long requests, long transferBytes, long decodedBytes, long domContentLoadedMillis, boolean blocking) {
+            this.requests = requests;
+            this.transferBytes = transferBytes;
+            this.decodedBytes = decodedBytes;
+            this.domContentLoadedMillis = domContentLoadedMillis;
+            this.blocking = blocking;
+        }
+
+        public long getRequests() { return requests; }
+        public long getTransferBytes() { return transferBytes; }
+        public long getDecodedBytes() { return decodedBytes; }
+        public long getDomContentLoadedMillis() { return domContentLoadedMillis; }
+        public boolean isBlocking() { return blocking; }
+
+        @Override
+        public String toString() {
+            return requests + " requests, " + (transferBytes / 1024) + " KB transferred, "
+                    + (decodedBytes / 1024) + " KB decoded, DOMContentLoaded " + domContentLoadedMillis
+                    + " ms (blocking " + (blocking ? "on" : "off") + ")";
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        List<String> allowlist = split(allowlistProperty);
+        blockedPatterns = split(blocklistProperty).stream()
+                .filter(pattern -> !allowlist.contains(pattern))
+                .collect(Collectors.toList());
+        logger.info("Network blocking {} with {} URL pattern(s)", blockingEnabled ? "enabled" : "disabled",
+                blockedPatterns.size());
+    }
+
+    /**
+     * Apply the current block list to a session. Sessions are pooled, so this runs on every acquire.
+     */
+    @SuppressWarnings("UseSpecificCatch")
+    public void apply(WebDriver driver) {
+        if (!(driver instanceof HasCdp cdp)) {
+            return;
+        }
+        try {
+            cdp.executeCdpCommand("Network.enable", Map.of());
+            cdp.executeCdpCommand("Network.setBlockedURLs",
+                    Map.of("urls", blockingEnabled ? blockedPatterns : List.of()));
+        } catch (Exception e) {
+            logger.warn("Could not apply network blocking: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Read the Resource Timing entries of the current page.
+     */
+    @SuppressWarnings("UseSpecificCatch")
+    public PageStats measure(WebDriver driver) {
+        boolean blocking = blockingEnabled;
+        try {
+            Object raw = ((JavascriptExecutor) driver).executeScript(MEASURE_SCRIPT);
+            if (!(raw instanceof List<?> values) || values.size() < 4) {
+                return null;
+            }
+            PageStats stats = new PageStats(
+                    ((Number) values.get(0)).longValue(),
+                    ((Number) values.get(1)).longValue(),
+                    ((Number) values.get(2)).longValue(),
+                    ((Number) values.get(3)).longValue(),
+                    blocking);
+
+            (blocking ? blockedPages : unblockedPages).incrementAndGet();
+            (blocking ? blockedRequests : unblockedRequests).addAndGet(stats.getRequests());
+            (blocking ? blockedBytes : unblockedBytes).addAndGet(stats.getTransferBytes());
+            return stats;
+        } catch (Exception e) {
+            logger.debug("Could not measure page network usage: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    public boolean isBlockingEnabled() {
+        return blockingEnabled;
+    }
+
+    public void setBlockingEnabled(boolean blockingEnabled) {
+        this.blockingEnabled = blockingEnabled;
+        logger.info("Network blocking {}", blockingEnabled ? "enabled" : "disabled");
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("blockingEnabled", blockingEnabled);
+        stats.put("blockedPatterns", blockedPatterns);
+        stats.put("withBlocking", modeStats(blockedPages.get(), blockedRequests.get(), blockedBytes.get()));
+        stats.put("withoutBlocking", modeStats(unblockedPages.get(), unblockedRequests.get(), unblockedBytes.get()));
+        return stats;
+    }
+
+    private Map<String, Object> modeStats(long pages, long requests, long bytes) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pages", pages);
+        stats.put("requests", requests);
+        stats.put("transferBytes", bytes);
+        stats.put("avgRequestsPerPage", pages > 0 ? requests / pages : 0);
+        stats.put("avgBytesPerPage", pages > 0 ? bytes / pages : 0);
+        return stats;
+    }
+
+    private static List<String> split(String value) {
+        if (value == null || value.isBlank()) {
+            return new ArrayList<>();
+        }
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toList());
+    }
+}
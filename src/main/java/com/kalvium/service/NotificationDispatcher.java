@@ -0,0 +1,283 @@
+package com.kalvium.service;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import com.kalvium.util.Backoff;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Sends outbox messages through the Resend HTTP API on a background schedule.
+ * Sends are spaced to stay under the API's rate limit; 429s, 5xx and network
+ * errors are retried with exponential backoff, other 4xx responses fail the
+ * message for good. The connection pool is shared across sends.
+ *
+ * Dispatch runs on its own thread rather than the shared scheduling thread, so a
+ * slow mail API cannot hold up the daily run or the queue poll. Each send has a
+ * response timeout, and a batch stops before a send could outlive the outbox lease.
+ */
+@Service
+public class NotificationDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    @Autowired
+    @Lazy
+    private NotificationOutbox outbox;
+
+    @Value("${email.enabled:true}")
+    private boolean emailEnabled;
+
+    @Value("${notification.email}")
+    private String notificationEmail;
+
+    @Value("${resend.from.email:onboarding@resend.dev}")
+    private String fromEmail;
+
+    @Value("${resend.api.key:}")
+    private String apiKey;
+
+    @Value("${notification.resend.url:https://api.resend.com}")
+    private String resendUrl;
+
+    @Value("${notification.batch-size:10}")
+    private int batchSize;
+
+    @Value("${notification.rate-per-second:2}")
+    private double ratePerSecond;
+
+    @Value("${notification.retry.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${notification.retry.base-delay-seconds:30}")
+    private long retryBaseDelaySeconds;
+
+    @Value("${notification.retry.max-delay-seconds:3600}")
+    private long retryMaxDelaySeconds;
+
+    @Value("${notification.retention-days:14}")
+    private int retentionDays;
+
+    @Value("${notification.dispatch-interval-ms:5000}")
+    private long dispatchIntervalMillis;
+
+    @Value("${notification.response-timeout-seconds:30}")
+    private long responseTimeoutSeconds;
+
+    private CloseableHttpClient httpClient;
+    private RestTemplate restTemplate;
+    private ScheduledExecutorService dispatcher;
+    private long nextSendAt;
+
+    @PostConstruct
+    public void init() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(4);
+        connectionManager.setDefaultMaxPerRoute(2);
+
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .evictIdleConnections(TimeValue.ofSeconds(60))
+                .evictExpiredConnections()
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setResponseTimeout(Timeout.ofSeconds(responseTimeoutSeconds))
+                        .build())
+                .build();
+
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        requestFactory.setConnectTimeout(5000);
+        requestFactory.setConnectionRequestTimeout(5000);
+        this.restTemplate = new RestTemplate(requestFactory);
+
+        if (emailEnabled && (apiKey == null || apiKey.isBlank())) {
+            logger.warn("RESEND_API_KEY is not set: notification dispatch is disabled and messages stay queued in the outbox");
+        }
+
+        dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "notification-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(100, dispatchIntervalMillis);
+        dispatcher.scheduleWithFixedDelay(this::dispatch, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        dispatcher.shutdownNow();
+        httpClient.close();
+    }
+
+    @SuppressWarnings("UseSpecificCatch")
+    public void dispatch() {
+        if (!emailEnabled || apiKey == null || apiKey.isBlank()) {
+            return;
+        }
+        try {
+            long claimedAt = System.currentTimeMillis();
+            // Worst case for one send: pool wait, connect and response timeouts
+            long sendBudgetMillis = TimeUnit.SECONDS.toMillis(responseTimeoutSeconds) + 10000;
+            long leaseMillis = TimeUnit.SECONDS.toMillis(outbox.getLeaseSeconds());
+            List<NotificationOutbox.Envelope> batch = outbox.claim(Math.max(1, batchSize));
+            for (int i = 0; i < batch.size(); i++) {
+                awaitRateLimit();
+                if (System.currentTimeMillis() - claimedAt + sendBudgetMillis > leaseMillis) {
+                    // Leave the rest to be reclaimed once the lease expires rather than risk a double send
+                    logger.warn("Outbox lease running out, deferring {} notification(s)", batch.size() - i);
+                    return;
+                }
+                send(batch.get(i));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Error dispatching notifications", e);
+        }
+    }
+
+    @Scheduled(cron = "0 30 3 * * *", zone = "UTC")
+    public void purgeOldMessages() {
+        int purged = outbox.purge(retentionDays);
+        if (purged > 0) {
+            logger.info("Purged {} old notification(s) from the outbox", purged);
+        }
+    }
+
+    private void send(NotificationOutbox.Envelope envelope) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBearerAuth(apiKey);
+
+        try {
+            String body = requestBody(fromEmail, notificationEmail, envelope.getSubject(), envelope.getHtml(),
+                    envelope.getAttachments());
+            ResponseEntity<String> response = restTemplate.postForEntity(resendUrl + "/emails",
+                    new HttpEntity<>(body, headers), String.class);
+            String providerId = parseId(response.getBody());
+            outbox.markSent(envelope, providerId);
+            logger.info("Notification #{} sent ({} attachment(s)). Email ID: {}", envelope.getId(),
+                    envelope.getAttachments().size(), providerId);
+        } catch (HttpStatusCodeException e) {
+            HttpStatusCode status = e.getStatusCode();
+            String error = status.value() + " " + e.getResponseBodyAsString();
+            if (status.value() == 429 || status.is5xxServerError()) {
+                retryOrFail(envelope, error, retryAfterSeconds(e));
+            } else {
+                logger.error("Notification #{} rejected by the mail API: {}", envelope.getId(), error);
+                outbox.markFailed(envelope, error);
+            }
+        } catch (ResourceAccessException e) {
+            retryOrFail(envelope, e.getMessage(), 0);
+        } catch (IOException e) {
+            outbox.markFailed(envelope, "Could not build request: " + e.getMessage());
+        }
+    }
+
+    private void retryOrFail(NotificationOutbox.Envelope envelope, String error, long minDelaySeconds) {
+        if (envelope.getAttempts() >= maxAttempts) {
+            logger.error("Notification #{} failed after {} attempt(s): {}", envelope.getId(), envelope.getAttempts(), error);
+            outbox.markFailed(envelope, error);
+            return;
+        }
+        long delay = Math.max(minDelaySeconds, retryDelaySeconds(envelope.getAttempts()));
+        logger.warn("Notification #{} attempt {}/{} failed, retrying in {} s: {}", envelope.getId(),
+                envelope.getAttempts(), maxAttempts, delay, error);
+        outbox.retryLater(envelope, error, delay);
+    }
+
+    private long retryDelaySeconds(int attempt) {
+        return Backoff.equalJitterSeconds(retryBaseDelaySeconds, retryMaxDelaySeconds, attempt);
+    }
+
+    private long retryAfterSeconds(HttpStatusCodeException e) {
+        String retryAfter = e.getResponseHeaders() != null ? e.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER) : null;
+        try {
+            return retryAfter != null ? Long.parseLong(retryAfter.trim()) : 0;
+        } catch (NumberFormatException ignored) {
+            return 0;
+        }
+    }
+
+    private synchronized void awaitRateLimit() throws InterruptedException {
+        long spacing = ratePerSecond > 0 ? (long) Math.ceil(1000 / ratePerSecond) : 0;
+        long wait = nextSendAt - System.currentTimeMillis();
+        if (wait > 0) {
+            Thread.sleep(wait);
+        }
+        nextSendAt = System.currentTimeMillis() + spacing;
+    }
+
+    private String parseId(String body) {
+        try {
+            JsonObject json = JsonParser.parseString(body).getAsJsonObject();
+            return json.has("id") ? json.get("id").getAsString() : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * JSON body for POST /emails, written into a buffer presized for the base64 attachments.
+     */
+    static String requestBody(String from, String to, String subject, String html,
+                              List<NotificationOutbox.Attachment> attachments) throws IOException {
+        int size = html.length() + subject.length() + 256;
+        for (NotificationOutbox.Attachment attachment : attachments) {
+            size += (attachment.getContent().length + 2) / 3 * 4 + attachment.getFileName().length() + 32;
+        }
+        StringWriter out = new StringWriter(size);
+        try (JsonWriter json = new JsonWriter(out)) {
+            json.setHtmlSafe(false);
+            json.beginObject();
+            json.name("from").value(from);
+            json.name("to").beginArray().value(to).endArray();
+            json.name("subject").value(subject);
+            json.name("html").value(html);
+            if (!attachments.isEmpty()) {
+                json.name("attachments").beginArray();
+                for (NotificationOutbox.Attachment attachment : attachments) {
+                    json.beginObject();
+                    json.name("filename").value(attachment.getFileName());
+                    json.name("content").value(Base64.getEncoder().encodeToString(attachment.getContent()));
+                    json.endObject();
+                }
+                json.endArray();
+            }
+            json.endObject();
+        }
+        return out.toString();
+    }
+}
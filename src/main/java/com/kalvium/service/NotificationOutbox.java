@@ -0,0 +1,504 @@
+package com.kalvium.service;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Persistent outbox for notification emails. Messages are written here by the
+ * scheduler and sent later by {@link NotificationDispatcher}, so a slow or failing
+ * mail API never blocks a run and nothing is lost while it is down. Rows are
+ * claimed with a lease like the work queue, so several instances can dispatch.
+ * In digest mode per-user messages are HELD and later folded into one summary.
+ */
+@Service
+public class NotificationOutbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationOutbox.class);
+    private static final String OUTBOX_TABLE = "notification_outbox";
+    private static final String ATTACHMENT_TABLE = "notification_outbox_attachment";
+
+    @Autowired(required = false)
+    private DataSource dataSource;
+
+    @Value("${notification.lease-seconds:120}")
+    private int leaseSeconds;
+
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName() + "-"
+            + UUID.randomUUID().toString().substring(0, 8);
+
+    public enum Status {
+        PENDING,
+        SENDING,
+        SENT,
+        HELD,
+        FOLDED,
+        FAILED
+    }
+
+    public static class Attachment {
+        private final String fileName;
+        private final byte[] content;
+
+        public Attachment(String fileName, byte[] content) {
+            this.fileName = fileName;
+            this.content = content;
+        }
+
+        public String getFileName() { return fileName; }
+        public byte[] getContent() { return content; }
+    }
+
+    public static class Message {
+        private final LocalDate runDate;
+        private final String kind;
+        private final String userLabel;
+        private final boolean failed;
+        private final String subject;
+        private final String html;
+        private final String summary;
+        private final List<Attachment> attachments;
+
+        public Message(LocalDate runDate, String kind, String userLabel, boolean failed,
+                       String subject, String html, String summary, List<Attachment> attachments) {
+            this.runDate = runDate;
+            this.kind = kind;
+            this.userLabel = userLabel;
+            this.failed = failed;
+            this.subject = subject;
+            this.html = html;
+            this.summary = summary;
+            this.attachments = attachments != null ? attachments : List.of();
+        }
+
+        public LocalDate getRunDate() { return runDate; }
+        public String getKind() { return kind; }
+        public String getUserLabel() { return userLabel; }
+        public boolean isFailed() { return failed; }
+        public String getSubject() { return subject; }
+        public String getHtml() { return html; }
+        public String getSummary() { return summary; }
+        public List<Attachment> getAttachments() { return attachments; }
+    }
+
+    /**
+     * A claimed row, ready to be sent.
+     */
+    public static class Envelope {
+        private final long id;
+        private final int attempts;
+        private final String subject;
+        private final String html;
+        private final List<Attachment> attachments;
+
+        Envelope(long id, int attempts, String subject, String html, List<Attachment> attachments) {
+            this.id = id;
+            this.attempts = attempts;
+            this.subject = subject;
+            this.html = html;
+            this.attachments = attachments;
+        }
+
+        public long getId() { return id; }
+
+        /**
+         * Number of times this row has been claimed, including the current claim.
+         */
+        public int getAttempts() { return attempts; }
+        public String getSubject() { return subject; }
+        public String getHtml() { return html; }
+        public List<Attachment> getAttachments() { return attachments; }
+    }
+
+    /**
+     * A per-user message held for the run digest.
+     */
+    public static class HeldEntry {
+        private final long id;
+        private final String userLabel;
+        private final boolean failed;
+        private final String summary;
+
+        HeldEntry(long id, String userLabel, boolean failed, String summary) {
+            this.id = id;
+            this.userLabel = userLabel;
+            this.failed = failed;
+            this.summary = summary;
+        }
+
+        public long getId() { return id; }
+        public String getUserLabel() { return userLabel; }
+        public boolean isFailed() { return failed; }
+        public String getSummary() { return summary; }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (dataSource == null) {
+            return;
+        }
+
+        String outboxSql = """
+            CREATE TABLE IF NOT EXISTS %s (
+                id BIGSERIAL PRIMARY KEY,
+                run_date DATE,
+                kind TEXT NOT NULL,
+                user_label TEXT,
+                failed BOOLEAN NOT NULL DEFAULT FALSE,
+                subject TEXT NOT NULL,
+                html TEXT NOT NULL,
+                summary TEXT,
+                status TEXT NOT NULL DEFAULT 'PENDING',
+                attempts INT NOT NULL DEFAULT 0,
+                next_attempt_at TIMESTAMPTZ,
+                lease_owner TEXT,
+                last_error TEXT,
+                provider_id TEXT,
+                created_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                updated_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP
+            )
+            """.formatted(OUTBOX_TABLE);
+        String attachmentSql = """
+            CREATE TABLE IF NOT EXISTS %s (
+                id BIGSERIAL PRIMARY KEY,
+                outbox_id BIGINT NOT NULL REFERENCES %s (id) ON DELETE CASCADE,
+                file_name TEXT NOT NULL,
+                content BYTEA NOT NULL
+            )
+            """.formatted(ATTACHMENT_TABLE, OUTBOX_TABLE);
+        String dueIndexSql = "CREATE INDEX IF NOT EXISTS %s_due_idx ON %s (status, next_attempt_at)"
+                .formatted(OUTBOX_TABLE, OUTBOX_TABLE);
+        String attachmentIndexSql = "CREATE INDEX IF NOT EXISTS %s_outbox_idx ON %s (outbox_id)"
+                .formatted(ATTACHMENT_TABLE, ATTACHMENT_TABLE);
+
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(outboxSql);
+            stmt.execute(attachmentSql);
+            stmt.execute(dueIndexSql);
+            stmt.execute(attachmentIndexSql);
+            logger.info("✓ Notification outbox ready");
+        } catch (SQLException e) {
+            logger.error("Failed to create notification outbox tables: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Store a message for the dispatcher, or as HELD for the run digest.
+     * @return the outbox row id, or -1 if it could not be stored
+     */
+    public long enqueue(Message message, boolean hold) {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                long id = insert(conn, message, hold ? Status.HELD : Status.PENDING);
+                insertAttachments(conn, id, message.getAttachments());
+                conn.commit();
+                logger.info("Queued {} notification #{} for {} ({} attachment(s){})", message.getKind(), id,
+                        message.getUserLabel() != null ? message.getUserLabel() : "run " + message.getRunDate(),
+                        message.getAttachments().size(), hold ? ", held for digest" : "");
+                return id;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to queue {} notification: {}", message.getKind(), e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Held per-user messages for a run, failures first.
+     */
+    public List<HeldEntry> listHeld(LocalDate runDate) {
+        List<HeldEntry> held = new ArrayList<>();
+        String sql = """
+            SELECT id, user_label, failed, summary FROM %s
+            WHERE run_date = ? AND status = 'HELD'
+            ORDER BY failed DESC, id
+            """.formatted(OUTBOX_TABLE);
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setDate(1, Date.valueOf(runDate));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    held.add(new HeldEntry(rs.getLong("id"), rs.getString("user_label"),
+                            rs.getBoolean("failed"), rs.getString("summary")));
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to list held notifications for {}: {}", runDate, e.getMessage());
+        }
+        return held;
+    }
+
+    /**
+     * Queue the digest and fold the held messages it covers into it in one transaction.
+     * Screenshots of failed users move to the digest; the rest are dropped with their rows later.
+     */
+    public long enqueueDigest(Message digest, List<HeldEntry> covered) {
+        String moveSql = "UPDATE %s SET outbox_id = ? WHERE outbox_id = ?".formatted(ATTACHMENT_TABLE);
+        String foldSql = """
+            UPDATE %s SET status = 'FOLDED', updated_at = CURRENT_TIMESTAMP
+            WHERE id = ? AND status = 'HELD'
+            """.formatted(OUTBOX_TABLE);
+
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement move = conn.prepareStatement(moveSql);
+                 PreparedStatement fold = conn.prepareStatement(foldSql)) {
+                long id = insert(conn, digest, Status.PENDING);
+                insertAttachments(conn, id, digest.getAttachments());
+                for (HeldEntry entry : covered) {
+                    if (entry.isFailed()) {
+                        move.setLong(1, id);
+                        move.setLong(2, entry.getId());
+                        move.addBatch();
+                    }
+                    fold.setLong(1, entry.getId());
+                    fold.addBatch();
+                }
+                move.executeBatch();
+                fold.executeBatch();
+                conn.commit();
+                logger.info("Queued digest notification #{} covering {} user(s)", id, covered.size());
+                return id;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to queue digest notification: {}", e.getMessage());
+            return -1;
+        }
+    }
+
+    public int getLeaseSeconds() {
+        return leaseSeconds;
+    }
+
+    /**
+     * Lease up to limit rows that are due: pending rows past their retry delay, or
+     * rows whose sender lost its lease.
+     */
+    public List<Envelope> claim(int limit) {
+        String claimSql = """
+            UPDATE %s SET status = 'SENDING', lease_owner = ?, attempts = attempts + 1,
+                next_attempt_at = CURRENT_TIMESTAMP + (? * INTERVAL '1 second'), updated_at = CURRENT_TIMESTAMP
+            WHERE id IN (
+                SELECT id FROM %s
+                WHERE status IN ('PENDING', 'SENDING')
+                  AND (next_attempt_at IS NULL OR next_attempt_at <= CURRENT_TIMESTAMP)
+                ORDER BY id
+                FOR UPDATE SKIP LOCKED
+                LIMIT ?
+            )
+            RETURNING id, attempts, subject, html
+            """.formatted(OUTBOX_TABLE, OUTBOX_TABLE);
+        String attachmentSql = "SELECT file_name, content FROM %s WHERE outbox_id = ? ORDER BY id"
+                .formatted(ATTACHMENT_TABLE);
+
+        List<Envelope> claimed = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(claimSql);
+             PreparedStatement attachments = conn.prepareStatement(attachmentSql)) {
+            pstmt.setString(1, nodeId);
+            pstmt.setInt(2, leaseSeconds);
+            pstmt.setInt(3, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    claimed.add(new Envelope(rs.getLong("id"), rs.getInt("attempts"), rs.getString("subject"),
+                            rs.getString("html"), new ArrayList<>()));
+                }
+            }
+            for (Envelope envelope : claimed) {
+                attachments.setLong(1, envelope.getId());
+                try (ResultSet rs = attachments.executeQuery()) {
+                    while (rs.next()) {
+                        envelope.getAttachments().add(new Attachment(rs.getString("file_name"), rs.getBytes("content")));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            logger.warn("Failed to claim notifications: {}", e.getMessage());
+        }
+        claimed.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+        return claimed;
+    }
+
+    public void markSent(Envelope envelope, String providerId) {
+        finish(envelope, Status.SENT, null, providerId, 0);
+    }
+
+    public void retryLater(Envelope envelope, String error, long delaySeconds) {
+        finish(envelope, Status.PENDING, error, null, delaySeconds);
+    }
+
+    public void markFailed(Envelope envelope, String error) {
+        finish(envelope, Status.FAILED, error, null, 0);
+    }
+
+    /**
+     * Delete sent, folded and never-digested held rows (and their attachments) older than the retention period.
+     */
+    public int purge(int retentionDays) {
+        String sql = """
+            DELETE FROM %s
+            WHERE status IN ('SENT', 'FOLDED', 'HELD')
+              AND updated_at < CURRENT_TIMESTAMP - (? * INTERVAL '1 day')
+            """.formatted(OUTBOX_TABLE);
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, retentionDays);
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.warn("Failed to purge notification outbox: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Row counts by status, plus the most recent failures.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        List<Map<String, Object>> failures = new ArrayList<>();
+        String countSql = "SELECT status, COUNT(*) AS total FROM %s GROUP BY status".formatted(OUTBOX_TABLE);
+        String failureSql = """
+            SELECT id, kind, user_label, attempts, last_error, updated_at FROM %s
+            WHERE status = 'FAILED' OR (status = 'PENDING' AND last_error IS NOT NULL)
+            ORDER BY updated_at DESC
+            LIMIT 20
+            """.formatted(OUTBOX_TABLE);
+
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(countSql)) {
+                while (rs.next()) {
+                    counts.put(rs.getString("status"), rs.getInt("total"));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery(failureSql)) {
+                while (rs.next()) {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("id", rs.getLong("id"));
+                    row.put("kind", rs.getString("kind"));
+                    row.put("user", rs.getString("user_label"));
+                    row.put("attempts", rs.getInt("attempts"));
+                    row.put("lastError", rs.getString("last_error"));
+                    row.put("updatedAt", rs.getTimestamp("updated_at"));
+                    failures.add(row);
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to read notification outbox stats: {}", e.getMessage());
+        }
+        stats.put("counts", counts);
+        stats.put("recentFailures", failures);
+        return stats;
+    }
+
+    private long insert(Connection conn, Message message, Status status) throws SQLException {
+        String sql = """
+            INSERT INTO %s (run_date, kind, user_label, failed, subject, html, summary, status)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            RETURNING id
+            """.formatted(OUTBOX_TABLE);
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            if (message.getRunDate() != null) {
+                pstmt.setDate(1, Date.valueOf(message.getRunDate()));
+            } else {
+                pstmt.setNull(1, Types.DATE);
+            }
+            pstmt.setString(2, message.getKind());
+            pstmt.setString(3, message.getUserLabel());
+            pstmt.setBoolean(4, message.isFailed());
+            pstmt.setString(5, message.getSubject());
+            pstmt.setString(6, message.getHtml());
+            pstmt.setString(7, message.getSummary());
+            pstmt.setString(8, status.name());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    private void insertAttachments(Connection conn, long outboxId, List<Attachment> attachments) throws SQLException {
+        if (attachments.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO %s (outbox_id, file_name, content) VALUES (?, ?, ?)".formatted(ATTACHMENT_TABLE);
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (Attachment attachment : attachments) {
+                pstmt.setLong(1, outboxId);
+                pstmt.setString(2, attachment.getFileName());
+                pstmt.setBytes(3, attachment.getContent());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    private void finish(Envelope envelope, Status status, String error, String providerId, long delaySeconds) {
+        String sql = """
+            UPDATE %s SET status = ?, last_error = ?, provider_id = COALESCE(?, provider_id),
+                next_attempt_at = CASE WHEN ? > 0 THEN CURRENT_TIMESTAMP + (? * INTERVAL '1 second') END,
+                lease_owner = NULL, updated_at = CURRENT_TIMESTAMP
+            WHERE id = ? AND lease_owner = ?
+            """.formatted(OUTBOX_TABLE);
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, status.name());
+            pstmt.setString(2, error);
+            pstmt.setString(3, providerId);
+            pstmt.setLong(4, delaySeconds);
+            pstmt.setLong(5, delaySeconds);
+            pstmt.setLong(6, envelope.getId());
+            pstmt.setString(7, nodeId);
+            if (pstmt.executeUpdate() == 0) {
+                logger.warn("Lease on notification #{} was lost before it could be updated", envelope.getId());
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to update notification #{}", envelope.getId(), e);
+        }
+    }
+
+    private Connection getConnection() throws SQLException {
+        if (dataSource == null) {
+            throw new SQLException("DataSource is not configured");
+        }
+        return dataSource.getConnection();
+    }
+}
@@ -0,0 +1,128 @@
+package com.kalvium.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.kalvium.model.AuthConfig;
+
+/**
+ * Cheap HTTP check run before a browser is launched for a user. It tells apart
+ * users whose cookies have expired, users with nothing pending, and users who
+ * actually need a submission.
+ */
+@Service
+public class PreflightService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PreflightService.class);
+
+    @Autowired
+    private KalviumPortalClient portalClient;
+
+    @Value("${preflight.enabled:true}")
+    private boolean enabled;
+
+    @Value("${http.engine.pending-path:/api/worklogs/pending}")
+    private String pendingPath;
+
+    @Value("${preflight.page-path:/internships}")
+    private String pagePath;
+
+    @Value("${preflight.trust-empty-pending:false}")
+    private boolean trustEmptyPending;
+
+    public enum Status {
+        SESSION_EXPIRED,
+        NOTHING_PENDING,
+        NEEDS_SUBMISSION,
+        UNKNOWN
+    }
+
+    public static class Result {
+        private final Status status;
+        private final long latencyMillis;
+        private final String detail;
+
+        Result(Status status, long latencyMillis, String detail) {
+            this.status = status;
+            this.latencyMillis = latencyMillis;
+            this.detail = detail;
+        }
+
+        public Status getStatus() { return status; }
+        public long getLatencyMillis() { return latencyMillis; }
+        public String getDetail() { return detail; }
+
+        /**
+         * Whether a browser run is still required. Unknown results fail open.
+         */
+        public boolean needsBrowser() {
+            return status == Status.NEEDS_SUBMISSION || status == Status.UNKNOWN;
+        }
+
+        @Override
+        public String toString() {
+            return status + " in " + latencyMillis + " ms (" + detail + ")";
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The pending-list API is undocumented, so its answer can only add information:
+     * a non-empty list means a submission is needed, and anything else (errors, login
+     * redirects, bodies that do not parse) falls through. Only the real portal page
+     * decides SESSION_EXPIRED. An empty list is trusted as NOTHING_PENDING only with
+     * preflight.trust-empty-pending; otherwise the browser run decides.
+     */
+    @SuppressWarnings("UseSpecificCatch")
+    public Result check(AuthConfig config) {
+        long start = System.currentTimeMillis();
+
+        if (!enabled) {
+            return new Result(Status.UNKNOWN, 0, "preflight disabled");
+        }
+
+        String pendingDetail;
+        try {
+            KalviumPortalClient.PortalResponse pending = portalClient.get(pendingPath, config);
+            if (pending.isSuccess()) {
+                int count = HttpWorklogEngine.parsePendingList(pending.getBody()).size();
+                if (count > 0) {
+                    return finish(Status.NEEDS_SUBMISSION, start, count + " pending worklog(s)");
+                }
+                if (trustEmptyPending) {
+                    return finish(Status.NOTHING_PENDING, start, "0 pending worklog(s)");
+                }
+                pendingDetail = "pending list empty";
+            } else {
+                pendingDetail = "pending list returned " + pending.getStatus();
+            }
+        } catch (HttpWorklogEngine.UnsupportedResponseException e) {
+            logger.debug("Pending list not usable for preflight: {}", e.getMessage());
+            pendingDetail = "pending list not usable";
+        } catch (Exception e) {
+            pendingDetail = "pending list failed: " + e.getMessage();
+        }
+
+        try {
+            KalviumPortalClient.PortalResponse page = portalClient.get(pagePath, config);
+            if (page.isUnauthorized() || portalClient.isLoginRedirect(page)) {
+                return finish(Status.SESSION_EXPIRED, start, "internships page redirected to login");
+            }
+            return finish(Status.UNKNOWN, start, "session accepted, " + pendingDetail);
+        } catch (Exception e) {
+            return finish(Status.UNKNOWN, start, "preflight failed: " + e.getMessage());
+        }
+    }
+
+    private Result finish(Status status, long start, String detail) {
+        Result result = new Result(status, System.currentTimeMillis() - start, detail);
+        logger.info("Preflight result: {}", result);
+        return result;
+    }
+}
@@ -0,0 +1,146 @@
+package com.kalvium.service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.ui.WebDriverWait;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Warms everything the daily run needs a few minutes before it starts: the
+ * chromedriver binary, the Chrome pool, the database pool, user configs and the
+ * portal's static assets. The outcome is kept as a readiness report.
+ */
+@Service
+public class PrewarmService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrewarmService.class);
+
+    @Autowired
+    @Lazy
+    private ChromeDriverPool chromeDriverPool;
+
+    @Autowired
+    @Lazy
+    private SupabaseConfigStorageService configStorage;
+
+    @Autowired
+    @Lazy
+    private ConfigCache configCache;
+
+    @Autowired
+    @Lazy
+    private NetworkPolicy networkPolicy;
+
+    @Autowired
+    @Lazy
+    private StaticAssetCache assetCache;
+
+    @Value("${prewarm.enabled:true}")
+    private boolean enabled;
+
+    @Value("${kalvium.base.url:https://kalvium.community}")
+    private String baseUrl;
+
+    private volatile Map<String, Object> lastReport;
+
+    @FunctionalInterface
+    private interface WarmStep {
+        String run() throws Exception;
+    }
+
+    /**
+     * Runs ahead of the 17:00 cron so the first user does not pay for cold starts.
+     */
+    @Scheduled(cron = "${prewarm.cron:0 55 16 * * MON-FRI}", zone = "Asia/Kolkata")
+    public void scheduledPrewarm() {
+        if (enabled) {
+            prewarm();
+        }
+    }
+
+    public synchronized Map<String, Object> prewarm() {
+        long start = System.currentTimeMillis();
+        logger.info("=== Pre-warm started ===");
+        Map<String, Object> steps = new LinkedHashMap<>();
+        boolean ready = true;
+
+        ready &= step(steps, "database", () -> configStorage.getUserCount() + " user(s)");
+        ready &= step(steps, "configs", () -> configCache.refresh() + " config(s) cached");
+        ready &= step(steps, "browser pool", () -> chromeDriverPool.warmUp() + " session(s) launched");
+        ready &= step(steps, "portal navigation", this::warmNavigation);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("ready", ready);
+        report.put("startedAt", start);
+        report.put("durationMillis", System.currentTimeMillis() - start);
+        report.put("steps", steps);
+        lastReport = report;
+
+        if (ready) {
+            logger.info("=== Pre-warm finished in {} ms: READY ===", report.get("durationMillis"));
+        } else {
+            logger.warn("=== Pre-warm finished in {} ms: DEGRADED {} ===", report.get("durationMillis"), steps);
+        }
+        return report;
+    }
+
+    public Map<String, Object> getLastReport() {
+        return lastReport;
+    }
+
+    @SuppressWarnings("UseSpecificCatch")
+    private boolean step(Map<String, Object> steps, String name, WarmStep action) {
+        long start = System.currentTimeMillis();
+        Map<String, Object> outcome = new LinkedHashMap<>();
+        boolean ok;
+        try {
+            outcome.put("detail", action.run());
+            ok = true;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            outcome.put("detail", e.getMessage());
+            ok = false;
+        }
+        long duration = System.currentTimeMillis() - start;
+        outcome.put("ok", ok);
+        outcome.put("durationMillis", duration);
+        steps.put(name, outcome);
+        logger.info("Pre-warm step '{}' {} in {} ms: {}", name, ok ? "done" : "FAILED", duration, outcome.get("detail"));
+        return ok;
+    }
+
+    /**
+     * Load the portal's landing page without cookies, so Chrome's first page load and
+     * the static asset cache are warm. The session goes back to the pool afterwards.
+     */
+    private String warmNavigation() throws InterruptedException {
+        ChromeDriverPool.Session session = chromeDriverPool.acquire();
+        StaticAssetCache.RunStats assetStats = null;
+        try {
+            WebDriver driver = session.getDriver();
+            networkPolicy.apply(driver);
+            assetStats = assetCache.attach(driver);
+            driver.get(baseUrl);
+            new WebDriverWait(driver, Duration.ofSeconds(30)).until(d -> "complete".equals(
+                    String.valueOf(((JavascriptExecutor) d).executeScript("return document.readyState"))));
+            return "loaded " + baseUrl + ", asset cache " + assetStats;
+        } finally {
+            if (assetStats != null) {
+                assetStats.close();
+            }
+            chromeDriverPool.release(session);
+        }
+    }
+}
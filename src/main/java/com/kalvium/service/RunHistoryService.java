@@ -0,0 +1,149 @@
+package com.kalvium.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.kalvium.model.RunResult;
+import com.kalvium.model.StepEvent;
+
+/**
+ * Bounded in-memory history of recent runs and their step events, used to see
+ * which steps dominate runtime. Oldest runs are dropped once the buffer is full.
+ */
+@Service
+public class RunHistoryService {
+
+    @Value("${run.history.size:50}")
+    private int historySize;
+
+    private final Deque<RunRecord> runs = new ArrayDeque<>();
+
+    public static class RunRecord {
+        private final String runId;
+        private final String user;
+        private final String engine;
+        private final long startedAt;
+        private final long durationMillis;
+        private final RunResult.Status status;
+        private final String message;
+        private final List<StepEvent> events;
+
+        RunRecord(String runId, String user, String engine, long startedAt, RunResult result) {
+            this.runId = runId;
+            this.user = user;
+            this.engine = engine;
+            this.startedAt = startedAt;
+            this.durationMillis = result.getDurationMillis();
+            this.status = result.getStatus();
+            this.message = result.getMessage();
+            this.events = result.getEvents();
+        }
+
+        public String getRunId() { return runId; }
+        public String getUser() { return user; }
+        public String getEngine() { return engine; }
+        public long getStartedAt() { return startedAt; }
+        public long getDurationMillis() { return durationMillis; }
+        public RunResult.Status getStatus() { return status; }
+        public String getMessage() { return message; }
+        public List<StepEvent> getEvents() { return events; }
+
+        Map<String, Object> toSummary() {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("runId", runId);
+            summary.put("user", user);
+            summary.put("engine", engine);
+            summary.put("startedAt", startedAt);
+            summary.put("durationMillis", durationMillis);
+            summary.put("status", status);
+            summary.put("message", message);
+            summary.put("eventCount", events.size());
+            return summary;
+        }
+    }
+
+    public void record(String user, String engine, long startedAt, RunResult result) {
+        if (result.getRunId() == null) {
+            return;
+        }
+        RunRecord record = new RunRecord(result.getRunId(), user, engine, startedAt, result);
+        synchronized (runs) {
+            runs.addFirst(record);
+            while (runs.size() > Math.max(1, historySize)) {
+                runs.removeLast();
+            }
+        }
+    }
+
+    /**
+     * Summaries of recent runs, newest first.
+     */
+    public List<Map<String, Object>> listRuns() {
+        List<Map<String, Object>> summaries = new ArrayList<>();
+        for (RunRecord record : snapshot()) {
+            summaries.add(record.toSummary());
+        }
+        return summaries;
+    }
+
+    public RunRecord getRun(String runId) {
+        for (RunRecord record : snapshot()) {
+            if (record.getRunId().equals(runId)) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Per step name: count, failures, average, p95 and max duration across the buffered runs,
+     * ordered by total time spent so the dominant steps come first.
+     */
+    public List<Map<String, Object>> getStepStats() {
+        Map<String, List<Long>> durations = new HashMap<>();
+        Map<String, Integer> failures = new HashMap<>();
+        for (RunRecord record : snapshot()) {
+            for (StepEvent event : record.getEvents()) {
+                if (!event.isTimed()) {
+                    continue;
+                }
+                durations.computeIfAbsent(event.getName(), k -> new ArrayList<>()).add(event.getDurationMillis());
+                if (event.getOutcome() == StepEvent.Outcome.FAILED) {
+                    failures.merge(event.getName(), 1, Integer::sum);
+                }
+            }
+        }
+
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (Map.Entry<String, List<Long>> entry : durations.entrySet()) {
+            long[] values = entry.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+            long total = Arrays.stream(values).sum();
+            Map<String, Object> step = new LinkedHashMap<>();
+            step.put("name", entry.getKey());
+            step.put("count", values.length);
+            step.put("failures", failures.getOrDefault(entry.getKey(), 0));
+            step.put("totalMillis", total);
+            step.put("avgMillis", total / values.length);
+            step.put("p95Millis", values[Math.min(values.length - 1, (int) Math.ceil(values.length * 0.95) - 1)]);
+            step.put("maxMillis", values[values.length - 1]);
+            stats.add(step);
+        }
+        stats.sort((a, b) -> Long.compare((Long) b.get("totalMillis"), (Long) a.get("totalMillis")));
+        return stats;
+    }
+
+    private List<RunRecord> snapshot() {
+        synchronized (runs) {
+            return new ArrayList<>(runs);
+        }
+    }
+}
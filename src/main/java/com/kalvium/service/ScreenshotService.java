@@ -0,0 +1,282 @@
+package com.kalvium.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.kalvium.model.RunResult;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Decides which screenshots a run takes and encodes/persists them off the
+ * automation thread. Only the raw capture from the browser happens inline.
+ * A run waits for its encodes (the result carries the images) but never for the
+ * database writes, which are queued behind them on a separate thread.
+ */
+@Service
+public class ScreenshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScreenshotService.class);
+
+    @Autowired
+    private ScreenshotStore screenshotStore;
+
+    @Value("${screenshot.policy:always}")
+    private String policyProperty;
+
+    @Value("${screenshot.sample-rate:0.2}")
+    private double sampleRate;
+
+    @Value("${screenshot.format:jpeg}")
+    private String formatProperty;
+
+    @Value("${screenshot.quality:0.7}")
+    private float quality;
+
+    @Value("${screenshot.scale:0.75}")
+    private double scale;
+
+    @Value("${screenshot.persist:true}")
+    private boolean persist;
+
+    @Value("${scheduler.worker-count:1}")
+    private int schedulerWorkers;
+
+    @Value("${job.worker-count:1}")
+    private int jobWorkers;
+
+    private Policy policy;
+    private String format;
+    private ExecutorService executor;
+    private ExecutorService writer;
+
+    public enum Policy {
+        ALWAYS,
+        ON_ERROR,
+        SAMPLED
+    }
+
+    /**
+     * Screenshots of a single run. Not thread-safe; owned by the automation thread.
+     */
+    public class Capture {
+        private final String authSessionId;
+        private final String runId;
+        private final boolean captureSteps;
+        private final List<CompletableFuture<RunResult.Screenshot>> pending = new ArrayList<>();
+
+        Capture(String authSessionId, String runId, boolean captureSteps) {
+            this.authSessionId = authSessionId;
+            this.runId = runId;
+            this.captureSteps = captureSteps;
+        }
+
+        public void step(WebDriver driver, String description) {
+            if (captureSteps) {
+                take(driver, description);
+            }
+        }
+
+        public void error(WebDriver driver, String description) {
+            take(driver, description);
+        }
+
+        /**
+         * Wait for outstanding encodes and return the screenshots in capture order.
+         */
+        public List<RunResult.Screenshot> collect(long timeoutMillis) {
+            List<RunResult.Screenshot> screenshots = new ArrayList<>();
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            for (CompletableFuture<RunResult.Screenshot> future : pending) {
+                try {
+                    long remaining = Math.max(1, deadline - System.currentTimeMillis());
+                    RunResult.Screenshot screenshot = future.get(remaining, TimeUnit.MILLISECONDS);
+                    if (screenshot != null) {
+                        screenshots.add(screenshot);
+                    }
+                } catch (TimeoutException e) {
+                    logger.warn("Screenshot encoding did not finish in time, skipping it");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    logger.warn("Screenshot encoding failed: {}", e.getMessage());
+                }
+            }
+            return screenshots;
+        }
+
+        @SuppressWarnings("UseSpecificCatch")
+        private void take(WebDriver driver, String description) {
+            byte[] png;
+            try {
+                png = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
+                logger.info("Screenshot captured: " + description);
+            } catch (Exception e) {
+                logger.warn("Failed to capture screenshot '" + description + "': " + e.getMessage());
+                return;
+            }
+
+            CompletableFuture<RunResult.Screenshot> encoded =
+                    CompletableFuture.supplyAsync(() -> encode(description, png), executor);
+            pending.add(encoded);
+            if (persist && authSessionId != null) {
+                // Fire and forget: collect() only waits for the encode
+                encoded.thenAcceptAsync(screenshot -> {
+                    try {
+                        screenshotStore.save(authSessionId, runId, description, screenshot.getContentType(), screenshot.getData());
+                    } catch (Exception dbError) {
+                        logger.warn("Failed to save screenshot to database: " + dbError.getMessage());
+                    }
+                }, writer);
+            }
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        policy = Policy.valueOf(policyProperty.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        format = formatProperty.trim().toLowerCase(Locale.ROOT);
+        if (format.equals("jpg")) {
+            format = "jpeg";
+        }
+        if (!format.equals("png") && !ImageIO.getImageWritersByFormatName(format).hasNext()) {
+            logger.warn("No ImageIO writer for '{}', falling back to jpeg", format);
+            format = "jpeg";
+        }
+
+        // One encoder per concurrent run, so runs do not queue behind each other's images
+        int encoders = Math.max(1, schedulerWorkers) + Math.max(1, jobWorkers);
+        AtomicInteger encoderIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(encoders, encoders, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "screenshot-encoder-" + encoderIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        writer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "screenshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("Screenshot policy {} ({} at quality {}, scale {}, {} encoder(s))", policy, format, quality, scale,
+                encoders);
+    }
+
+    public Capture begin(String authSessionId, String runId) {
+        boolean captureSteps = switch (policy) {
+            case ALWAYS -> true;
+            case ON_ERROR -> false;
+            case SAMPLED -> ThreadLocalRandom.current().nextDouble() < sampleRate;
+        };
+        return new Capture(authSessionId, runId, captureSteps);
+    }
+
+    private RunResult.Screenshot encode(String description, byte[] png) {
+        if (format.equals("png") && scale >= 1.0) {
+            return new RunResult.Screenshot(description, png, "image/png");
+        }
+
+        try {
+            BufferedImage source = ImageIO.read(new ByteArrayInputStream(png));
+            if (source == null) {
+                return new RunResult.Screenshot(description, png, "image/png");
+            }
+
+            int width = Math.max(1, (int) Math.round(source.getWidth() * Math.min(scale, 1.0)));
+            int height = Math.max(1, (int) Math.round(source.getHeight() * Math.min(scale, 1.0)));
+            BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = target.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(source, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+
+            byte[] encoded = write(target, format);
+            logger.debug("Encoded screenshot '{}' {} KB -> {} KB", description, png.length / 1024, encoded.length / 1024);
+            return new RunResult.Screenshot(description, encoded, "image/" + format);
+        } catch (IOException e) {
+            logger.warn("Could not re-encode screenshot '{}', keeping PNG: {}", description, e.getMessage());
+            return new RunResult.Screenshot(description, png, "image/png");
+        }
+    }
+
+    private byte[] write(BufferedImage image, String formatName) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(formatName);
+        if (!writers.hasNext()) {
+            throw new IOException("No writer for " + formatName);
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if (param.getCompressionTypes() != null && param.getCompressionType() == null) {
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                }
+                param.setCompressionQuality(quality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Encoders first, so their queued saves reach the writer before it stops accepting work
+        awaitShutdown(executor);
+        awaitShutdown(writer);
+    }
+
+    private static void awaitShutdown(ExecutorService service) {
+        service.shutdown();
+        try {
+            if (!service.awaitTermination(10, TimeUnit.SECONDS)) {
+                service.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            service.shutdownNow();
+        }
+    }
+}
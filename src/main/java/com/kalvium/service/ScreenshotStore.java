@@ -0,0 +1,580 @@
+package com.kalvium.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Content-addressed screenshot storage. Each distinct image is stored once in
+ * screenshot_blob under its SHA-256, already re-encoded by {@link ScreenshotService};
+ * every capture adds a small row to worklog_screenshot_ref pointing at it. The same
+ * "page loaded" image captured daily for every user therefore costs one blob.
+ * {@link #applyRetention()} trims refs by age and per-user count in bounded batches,
+ * then drops blobs nothing references, and moves rows out of the old
+ * worklog_screenshots table.
+ */
+@Service
+public class ScreenshotStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScreenshotStore.class);
+    private static final String BLOB_TABLE = "screenshot_blob";
+    private static final String REF_TABLE = "worklog_screenshot_ref";
+    private static final String LEGACY_TABLE = "worklog_screenshots";
+
+    @Autowired(required = false)
+    private DataSource dataSource;
+
+    @Value("${screenshot.retention.max-age-days:30}")
+    private int maxAgeDays;
+
+    @Value("${screenshot.retention.keep-per-user:50}")
+    private int keepPerUser;
+
+    @Value("${screenshot.retention.batch-size:500}")
+    private int batchSize;
+
+    @Value("${screenshot.retention.max-batches:20}")
+    private int maxBatches;
+
+    @Value("${screenshot.stream-chunk-bytes:262144}")
+    private int streamChunkBytes;
+
+    @Value("${screenshot.url.secret:}")
+    private String urlSecret;
+
+    @Value("${screenshot.url.ttl-seconds:3600}")
+    private long urlTtlSeconds;
+
+    private byte[] urlKey;
+
+    @PostConstruct
+    public void init() {
+        if (urlSecret != null && !urlSecret.isBlank()) {
+            urlKey = urlSecret.getBytes(StandardCharsets.UTF_8);
+        } else {
+            urlKey = new byte[32];
+            new SecureRandom().nextBytes(urlKey);
+            logger.warn("SCREENSHOT_URL_SECRET is not set: screenshot links are signed with a random key and "
+                    + "stop working after a restart or on another instance");
+        }
+
+        if (dataSource == null) {
+            return;
+        }
+
+        String blobSql = """
+            CREATE TABLE IF NOT EXISTS %s (
+                sha256 TEXT PRIMARY KEY,
+                content_type TEXT NOT NULL,
+                size_bytes INT NOT NULL,
+                data BYTEA NOT NULL,
+                created_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                last_used_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP
+            )
+            """.formatted(BLOB_TABLE);
+        String refSql = """
+            CREATE TABLE IF NOT EXISTS %s (
+                id BIGSERIAL PRIMARY KEY,
+                user_auth_session_id TEXT NOT NULL,
+                run_id TEXT,
+                description TEXT,
+                blob_sha256 TEXT NOT NULL REFERENCES %s (sha256),
+                created_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP
+            )
+            """.formatted(REF_TABLE, BLOB_TABLE);
+        String userIndexSql = "CREATE INDEX IF NOT EXISTS %s_user_idx ON %s (user_auth_session_id, created_at DESC)"
+                .formatted(REF_TABLE, REF_TABLE);
+        String blobIndexSql = "CREATE INDEX IF NOT EXISTS %s_blob_idx ON %s (blob_sha256)".formatted(REF_TABLE, REF_TABLE);
+        String ageIndexSql = "CREATE INDEX IF NOT EXISTS %s_created_idx ON %s (created_at)".formatted(REF_TABLE, REF_TABLE);
+
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(blobSql);
+            stmt.execute(refSql);
+            stmt.execute(userIndexSql);
+            stmt.execute(blobIndexSql);
+            stmt.execute(ageIndexSql);
+            logger.info("✓ Screenshot store ready");
+        } catch (SQLException e) {
+            logger.error("Failed to create screenshot store tables: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Store a screenshot for a user. The image bytes are only sent to the database
+     * when no blob with the same hash exists yet.
+     */
+    public void save(String authSessionId, String runId, String description, String contentType, byte[] data) {
+        String sha256 = sha256(data);
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                boolean stored = upsertBlob(conn, sha256, contentType, data);
+                insertRef(conn, authSessionId, runId, description, sha256, null);
+                conn.commit();
+                logger.info("Screenshot '{}' saved ({} KB, {})", description, data.length / 1024,
+                        stored ? "new blob" : "deduplicated");
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to save screenshot", e);
+        }
+    }
+
+    public static class ScreenshotInfo {
+        private final long id;
+        private final String description;
+        private final String sha256;
+        private final String contentType;
+        private final int sizeBytes;
+        private final Timestamp createdAt;
+
+        ScreenshotInfo(long id, String description, String sha256, String contentType, int sizeBytes, Timestamp createdAt) {
+            this.id = id;
+            this.description = description;
+            this.sha256 = sha256;
+            this.contentType = contentType;
+            this.sizeBytes = sizeBytes;
+            this.createdAt = createdAt;
+        }
+
+        public long getId() { return id; }
+        public String getDescription() { return description; }
+        public String getSha256() { return sha256; }
+        public String getContentType() { return contentType; }
+        public int getSizeBytes() { return sizeBytes; }
+        public Timestamp getCreatedAt() { return createdAt; }
+    }
+
+    /**
+     * One page of the user's screenshots, newest first. Metadata only; image data
+     * is fetched per screenshot with {@link #streamBlob}.
+     */
+    public List<ScreenshotInfo> listScreenshots(String authSessionId, int page, int size) {
+        List<ScreenshotInfo> screenshots = new ArrayList<>();
+        String sql = """
+            SELECT r.id, r.description, r.blob_sha256, b.content_type, b.size_bytes, r.created_at
+            FROM %s r JOIN %s b ON b.sha256 = r.blob_sha256
+            WHERE r.user_auth_session_id = ?
+            ORDER BY r.created_at DESC, r.id DESC
+            LIMIT ? OFFSET ?
+            """.formatted(REF_TABLE, BLOB_TABLE);
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, authSessionId);
+            pstmt.setInt(2, size);
+            pstmt.setLong(3, (long) page * size);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    screenshots.add(toInfo(rs));
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to list screenshots", e);
+            throw new RuntimeException("Failed to list screenshots", e);
+        }
+        return screenshots;
+    }
+
+    public int countScreenshots(String authSessionId) {
+        String sql = "SELECT COUNT(*) FROM %s WHERE user_auth_session_id = ?".formatted(REF_TABLE);
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, authSessionId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to count screenshots", e);
+            throw new RuntimeException("Failed to count screenshots", e);
+        }
+    }
+
+    /**
+     * Signed download token, so image URLs never carry the user's session ID. It is
+     * "expiry.hmac": an HMAC-SHA256 under screenshot.url.secret of the id, the expiry
+     * and the screenshot's owner, valid for screenshot.url.ttl-seconds. Rotating the
+     * secret revokes every outstanding link.
+     */
+    public String downloadToken(long id, String authSessionId) {
+        long expires = System.currentTimeMillis() / 1000 + Math.max(1, urlTtlSeconds);
+        return expires + "." + sign(id, expires, authSessionId);
+    }
+
+    private String sign(long id, long expires, String authSessionId) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(urlKey, "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal((id + ":" + expires + ":" + authSessionId)
+                    .getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    /**
+     * Metadata of a screenshot, or null if it does not exist, the token has expired
+     * or it was not signed for the screenshot's owner.
+     */
+    public ScreenshotInfo findScreenshot(long id, String token) {
+        int dot = token != null ? token.indexOf('.') : -1;
+        if (dot <= 0) {
+            return null;
+        }
+        long expires;
+        try {
+            expires = Long.parseLong(token.substring(0, dot));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (expires < System.currentTimeMillis() / 1000) {
+            return null;
+        }
+
+        String sql = """
+            SELECT r.id, r.description, r.blob_sha256, b.content_type, b.size_bytes, r.created_at,
+                   r.user_auth_session_id
+            FROM %s r JOIN %s b ON b.sha256 = r.blob_sha256
+            WHERE r.id = ?
+            """.formatted(REF_TABLE, BLOB_TABLE);
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                byte[] expected = sign(id, expires, rs.getString("user_auth_session_id")).getBytes(StandardCharsets.UTF_8);
+                byte[] actual = token.substring(dot + 1).getBytes(StandardCharsets.UTF_8);
+                return MessageDigest.isEqual(expected, actual) ? toInfo(rs) : null;
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to look up screenshot {}", id, e);
+            throw new RuntimeException("Failed to look up screenshot", e);
+        }
+    }
+
+    /**
+     * Copy a blob to the output in chunks of stream-chunk-bytes. The driver reads a
+     * bytea column whole, so each chunk is its own substring() query; only one chunk
+     * is on the heap at a time. The pool has two connections shared with the work
+     * queue, so one is borrowed per chunk and returned before the chunk is written
+     * to a possibly slow client.
+     */
+    public void streamBlob(String sha256, int sizeBytes, OutputStream out) throws IOException {
+        String sql = "SELECT substring(data FROM ? FOR ?) FROM %s WHERE sha256 = ?".formatted(BLOB_TABLE);
+        int chunk = Math.max(8192, streamChunkBytes);
+
+        for (int offset = 0; offset < sizeBytes; offset += chunk) {
+            byte[] data;
+            try (Connection conn = getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, offset + 1);
+                pstmt.setInt(2, chunk);
+                pstmt.setString(3, sha256);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new IOException("Screenshot blob " + sha256 + " disappeared while streaming");
+                    }
+                    data = rs.getBytes(1);
+                }
+            } catch (SQLException e) {
+                throw new IOException("Failed to stream screenshot blob " + sha256, e);
+            }
+            out.write(data);
+        }
+        out.flush();
+    }
+
+    private ScreenshotInfo toInfo(ResultSet rs) throws SQLException {
+        return new ScreenshotInfo(rs.getLong("id"), rs.getString("description"), rs.getString("blob_sha256"),
+                rs.getString("content_type"), rs.getInt("size_bytes"), rs.getTimestamp("created_at"));
+    }
+
+    /**
+     * Retention pass: refs older than max-age-days, refs beyond keep-per-user for each
+     * user, then unreferenced blobs. Each step deletes at most max-batches batches of
+     * batch-size rows, so a large backlog is worked off over several runs.
+     * @return rows deleted (or migrated) per step
+     */
+    public Map<String, Integer> applyRetention() {
+        Map<String, Integer> report = new LinkedHashMap<>();
+        String byAgeSql = """
+            DELETE FROM %s WHERE id IN (
+                SELECT id FROM %s WHERE created_at < CURRENT_TIMESTAMP - (? * INTERVAL '1 day')
+                LIMIT ?
+            )
+            """.formatted(REF_TABLE, REF_TABLE);
+        String byCountSql = """
+            DELETE FROM %s WHERE id IN (
+                SELECT id FROM (
+                    SELECT id, ROW_NUMBER() OVER (PARTITION BY user_auth_session_id ORDER BY created_at DESC, id DESC) AS rank
+                    FROM %s
+                ) ranked
+                WHERE rank > ?
+                LIMIT ?
+            )
+            """.formatted(REF_TABLE, REF_TABLE);
+        // The grace period keeps a blob whose ref is being inserted by a concurrent save
+        String orphanSql = """
+            DELETE FROM %s WHERE sha256 IN (
+                SELECT b.sha256 FROM %s b
+                WHERE b.last_used_at < CURRENT_TIMESTAMP - INTERVAL '1 hour'
+                  AND NOT EXISTS (SELECT 1 FROM %s r WHERE r.blob_sha256 = b.sha256)
+                LIMIT ?
+            )
+            """.formatted(BLOB_TABLE, BLOB_TABLE, REF_TABLE);
+
+        report.put("migratedLegacy", migrateLegacy());
+        report.put("expiredByAge", deleteInBatches(byAgeSql, Math.max(1, maxAgeDays)));
+        report.put("expiredByCount", deleteInBatches(byCountSql, Math.max(1, keepPerUser)));
+        report.put("orphanBlobs", deleteInBatches(orphanSql, null));
+        logger.info("Screenshot retention: {}", report);
+        return report;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        String sql = """
+            SELECT (SELECT COUNT(*) FROM %s) AS refs,
+                   (SELECT COUNT(*) FROM %s) AS blobs,
+                   (SELECT COALESCE(SUM(size_bytes), 0) FROM %s) AS blob_bytes
+            """.formatted(REF_TABLE, BLOB_TABLE, BLOB_TABLE);
+
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            if (rs.next()) {
+                stats.put("refs", rs.getLong("refs"));
+                stats.put("blobs", rs.getLong("blobs"));
+                stats.put("blobBytes", rs.getLong("blob_bytes"));
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to read screenshot store stats: {}", e.getMessage());
+        }
+        return stats;
+    }
+
+    private int deleteInBatches(String sql, Integer parameter) {
+        int total = 0;
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int batch = 0; batch < Math.max(1, maxBatches); batch++) {
+                int index = 1;
+                if (parameter != null) {
+                    pstmt.setInt(index++, parameter);
+                }
+                pstmt.setInt(index, Math.max(1, batchSize));
+                int deleted = pstmt.executeUpdate();
+                total += deleted;
+                if (deleted < batchSize) {
+                    break;
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Screenshot retention step failed after {} row(s): {}", total, e.getMessage());
+        }
+        return total;
+    }
+
+    /**
+     * Work off the pre-blob worklog_screenshots table: rows already past the age limit
+     * are deleted without reading their images, the rest are moved into the blob store
+     * in up to max-batches small batches, each in its own transaction. The table is
+     * dropped once it is empty.
+     */
+    private int migrateLegacy() {
+        String expiredSql = """
+            DELETE FROM %s WHERE id IN (
+                SELECT id FROM %s
+                WHERE created_at IS NULL OR screenshot_data IS NULL
+                   OR created_at < CURRENT_TIMESTAMP - (? * INTERVAL '1 day')
+                LIMIT ?
+            )
+            """.formatted(LEGACY_TABLE, LEGACY_TABLE);
+
+        try (Connection conn = getConnection()) {
+            if (!tableExists(conn, LEGACY_TABLE)) {
+                return 0;
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to migrate legacy screenshots: {}", e.getMessage());
+            return 0;
+        }
+
+        int total = deleteInBatches(expiredSql, Math.max(1, maxAgeDays));
+        // Legacy rows hold full images, so keep each batch small
+        int limit = Math.max(1, Math.min(batchSize, 50));
+        try {
+            for (int batch = 0; batch < Math.max(1, maxBatches); batch++) {
+                int migrated = migrateLegacyBatch(limit);
+                total += migrated;
+                if (migrated < limit) {
+                    dropLegacyIfEmpty();
+                    break;
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to migrate legacy screenshots after {} row(s): {}", total, e.getMessage());
+        }
+        return total;
+    }
+
+    private int migrateLegacyBatch(int limit) throws SQLException {
+        String selectSql = """
+            SELECT id, user_auth_session_id, description, screenshot_data, created_at
+            FROM %s ORDER BY id LIMIT ?
+            """.formatted(LEGACY_TABLE);
+        String deleteSql = "DELETE FROM %s WHERE id = ?".formatted(LEGACY_TABLE);
+
+        int migrated = 0;
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement select = conn.prepareStatement(selectSql);
+                 PreparedStatement delete = conn.prepareStatement(deleteSql)) {
+                select.setInt(1, limit);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        byte[] data = rs.getBytes("screenshot_data");
+                        if (data != null) {
+                            String sha256 = sha256(data);
+                            upsertBlob(conn, sha256, sniffContentType(data), data);
+                            insertRef(conn, rs.getString("user_auth_session_id"), null, rs.getString("description"),
+                                    sha256, rs.getTimestamp("created_at"));
+                        }
+                        delete.setLong(1, rs.getLong("id"));
+                        delete.executeUpdate();
+                        migrated++;
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        return migrated;
+    }
+
+    private void dropLegacyIfEmpty() throws SQLException {
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT EXISTS (SELECT 1 FROM " + LEGACY_TABLE + ")")) {
+                if (rs.next() && rs.getBoolean(1)) {
+                    return;
+                }
+            }
+            stmt.execute("DROP TABLE IF EXISTS " + LEGACY_TABLE);
+            logger.info("Legacy {} table is empty and was dropped", LEGACY_TABLE);
+        }
+    }
+
+    /**
+     * @return true if the blob was inserted, false if it already existed
+     */
+    private boolean upsertBlob(Connection conn, String sha256, String contentType, byte[] data) throws SQLException {
+        String touchSql = "UPDATE %s SET last_used_at = CURRENT_TIMESTAMP WHERE sha256 = ?".formatted(BLOB_TABLE);
+        String insertSql = """
+            INSERT INTO %s (sha256, content_type, size_bytes, data) VALUES (?, ?, ?, ?)
+            ON CONFLICT (sha256) DO UPDATE SET last_used_at = CURRENT_TIMESTAMP
+            """.formatted(BLOB_TABLE);
+
+        try (PreparedStatement touch = conn.prepareStatement(touchSql)) {
+            touch.setString(1, sha256);
+            if (touch.executeUpdate() > 0) {
+                return false;
+            }
+        }
+        try (PreparedStatement insert = conn.prepareStatement(insertSql)) {
+            insert.setString(1, sha256);
+            insert.setString(2, contentType);
+            insert.setInt(3, data.length);
+            insert.setBytes(4, data);
+            insert.executeUpdate();
+            return true;
+        }
+    }
+
+    private void insertRef(Connection conn, String authSessionId, String runId, String description,
+                           String sha256, Timestamp createdAt) throws SQLException {
+        String sql = """
+            INSERT INTO %s (user_auth_session_id, run_id, description, blob_sha256, created_at)
+            VALUES (?, ?, ?, ?, COALESCE(?, CURRENT_TIMESTAMP))
+            """.formatted(REF_TABLE);
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, authSessionId);
+            pstmt.setString(2, runId);
+            pstmt.setString(3, description);
+            pstmt.setString(4, sha256);
+            pstmt.setTimestamp(5, createdAt);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private boolean tableExists(Connection conn, String table) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT to_regclass(?) IS NOT NULL")) {
+            pstmt.setString(1, table);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private String sniffContentType(byte[] data) {
+        if (data.length > 3 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xD8) {
+            return "image/jpeg";
+        }
+        return "image/png";
+    }
+
+    static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private Connection getConnection() throws SQLException {
+        if (dataSource == null) {
+            throw new SQLException("DataSource is not configured");
+        }
+        return dataSource.getConnection();
+    }
+}
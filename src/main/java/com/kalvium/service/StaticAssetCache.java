@@ -0,0 +1,399 @@
+package com.kalvium.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.devtools.NetworkInterceptor;
+import org.openqa.selenium.remote.http.Contents;
+import org.openqa.selenium.remote.http.Filter;
+import org.openqa.selenium.remote.http.HttpMethod;
+import org.openqa.selenium.remote.http.HttpRequest;
+import org.openqa.selenium.remote.http.HttpResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Disk cache for immutable static assets (fingerprinted JS/CSS/fonts) shared by
+ * every Chrome session. Requests are intercepted through DevTools: cached assets
+ * are answered locally, everything else goes to the network untouched. HTML, API
+ * responses and anything marked private, no-store, no-cache or max-age=0 are
+ * never stored.
+ */
+@Component
+public class StaticAssetCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(StaticAssetCache.class);
+    private static final String BODY_SUFFIX = ".body";
+    private static final String META_SUFFIX = ".meta";
+    private static final Pattern ZERO_MAX_AGE = Pattern.compile("(^|[,\\s])max-age=0+([,\\s]|$)");
+
+    @Value("${asset.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${asset.cache.dir:/app/data/asset-cache}")
+    private String cacheDir;
+
+    @Value("${asset.cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${asset.cache.max-entry-bytes:5242880}")
+    private long maxEntryBytes;
+
+    @Value("${asset.cache.url-pattern:}")
+    private String urlPatternProperty;
+
+    private Pattern urlPattern;
+    private Path root;
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    private static class Entry {
+        private final String url;
+        private final String contentType;
+        private final long size;
+
+        Entry(String url, String contentType, long size) {
+            this.url = url;
+            this.contentType = contentType;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Cache activity of one browser run. Closing it detaches the interceptor.
+     */
+    public static class RunStats implements AutoCloseable {
+        private volatile NetworkInterceptor interceptor;
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong bytesSaved = new AtomicLong();
+
+        RunStats(NetworkInterceptor interceptor) {
+            this.interceptor = interceptor;
+        }
+
+        public long getHits() { return hits.get(); }
+        public long getMisses() { return misses.get(); }
+        public long getBytesSaved() { return bytesSaved.get(); }
+
+        public double getHitRatio() {
+            long total = hits.get() + misses.get();
+            return total > 0 ? (double) hits.get() / total : 0;
+        }
+
+        @Override
+        @SuppressWarnings("UseSpecificCatch")
+        public void close() {
+            NetworkInterceptor attached = interceptor;
+            interceptor = null;
+            if (attached == null) {
+                return;
+            }
+            try {
+                attached.close();
+            } catch (Exception e) {
+                logger.debug("Could not detach asset cache interceptor: {}", e.getMessage());
+            }
+        }
+
+        @Override
+        public String toString() {
+            return hits.get() + " hit(s), " + misses.get() + " miss(es), hit ratio "
+                    + Math.round(getHitRatio() * 100) + "%, " + (bytesSaved.get() / 1024) + " KB saved";
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        // Only fingerprinted files, whose URL changes with their content: a content hash in
+        // the file name, or anything under Next's per-build /_next/static/<buildId>/ directory
+        urlPattern = Pattern.compile(urlPatternProperty == null || urlPatternProperty.isBlank()
+                ? ".*[./-][0-9a-f]{8,}(\\.chunk)?\\.(js|css|woff2?|ttf|otf)$"
+                        + "|.*/_next/static/(?!chunks/|css/|media/|webpack/)[^/]+/.*\\.(js|css)$"
+                : urlPatternProperty);
+        if (!enabled) {
+            logger.info("Static asset cache disabled");
+            return;
+        }
+        try {
+            root = Files.createDirectories(Paths.get(cacheDir));
+            loadIndex();
+            logger.info("Static asset cache at {}: {} entries, {} KB of {} KB", root, entries.size(),
+                    totalBytes / 1024, maxBytes / 1024);
+        } catch (IOException e) {
+            logger.warn("Static asset cache disabled, could not open {}: {}", cacheDir, e.getMessage());
+            enabled = false;
+        }
+    }
+
+    /**
+     * Start serving cached assets to the given browser. The returned stats must be
+     * closed when the run ends, since pooled sessions outlive a single run.
+     */
+    @SuppressWarnings("UseSpecificCatch")
+    public RunStats attach(WebDriver driver) {
+        if (!enabled) {
+            return new RunStats(null);
+        }
+        RunStats[] holder = new RunStats[1];
+        Filter filter = next -> request -> {
+            RunStats run = holder[0];
+            if (!isCacheableRequest(request)) {
+                return next.execute(request);
+            }
+            HttpResponse cached = lookup(request.getUri());
+            if (cached != null) {
+                long size = Long.parseLong(cached.getHeader("Content-Length"));
+                hits.incrementAndGet();
+                bytesSaved.addAndGet(size);
+                if (run != null) {
+                    run.hits.incrementAndGet();
+                    run.bytesSaved.addAndGet(size);
+                }
+                return cached;
+            }
+            misses.incrementAndGet();
+            if (run != null) {
+                run.misses.incrementAndGet();
+            }
+            HttpResponse response = next.execute(request);
+            return store(request.getUri(), response);
+        };
+        try {
+            holder[0] = new RunStats(new NetworkInterceptor(driver, filter));
+        } catch (Exception e) {
+            logger.warn("Could not attach static asset cache: {}", e.getMessage());
+            holder[0] = new RunStats(null);
+        }
+        return holder[0];
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long lookups = hits.get() + misses.get();
+        stats.put("enabled", enabled);
+        stats.put("directory", cacheDir);
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("bytes", totalBytes);
+        }
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("hitRatio", lookups > 0 ? (double) hits.get() / lookups : 0);
+        stats.put("bytesSaved", bytesSaved.get());
+        stats.put("stored", stored.get());
+        stats.put("evicted", evicted.get());
+        return stats;
+    }
+
+    private boolean isCacheableRequest(HttpRequest request) {
+        if (request.getMethod() != HttpMethod.GET) {
+            return false;
+        }
+        try {
+            URI uri = URI.create(request.getUri());
+            String scheme = uri.getScheme();
+            return ("https".equals(scheme) || "http".equals(scheme))
+                    && uri.getPath() != null
+                    && urlPattern.matcher(uri.getPath()).matches();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private boolean matchesPattern(String url) {
+        try {
+            String path = URI.create(url).getPath();
+            return path != null && urlPattern.matcher(path).matches();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private boolean isCacheableResponse(HttpResponse response) {
+        if (response.getStatus() != 200 || response.getHeader("Set-Cookie") != null) {
+            return false;
+        }
+        String cacheControl = String.valueOf(response.getHeader("Cache-Control")).toLowerCase(Locale.ROOT);
+        if (cacheControl.contains("no-store") || cacheControl.contains("private") || cacheControl.contains("no-cache")
+                || ZERO_MAX_AGE.matcher(cacheControl).find()) {
+            return false;
+        }
+        String contentType = String.valueOf(response.getHeader("Content-Type")).toLowerCase(Locale.ROOT);
+        return !contentType.contains("html") && !contentType.contains("json");
+    }
+
+    private synchronized HttpResponse lookup(String url) {
+        String key = key(url);
+        Entry entry = entries.get(key);
+        if (entry == null || !entry.url.equals(url)) {
+            return null;
+        }
+        try {
+            byte[] body = Files.readAllBytes(root.resolve(key + BODY_SUFFIX));
+            Files.setLastModifiedTime(root.resolve(key + META_SUFFIX), FileTime.fromMillis(System.currentTimeMillis()));
+            HttpResponse response = new HttpResponse().setStatus(200).setContent(Contents.bytes(body));
+            response.setHeader("Content-Type", entry.contentType);
+            response.setHeader("Content-Length", String.valueOf(body.length));
+            response.setHeader("Cache-Control", "public, max-age=31536000, immutable");
+            return response;
+        } catch (IOException e) {
+            logger.debug("Dropping unreadable cache entry for {}: {}", url, e.getMessage());
+            remove(key);
+            return null;
+        }
+    }
+
+    private HttpResponse store(String url, HttpResponse response) {
+        if (!isCacheableResponse(response)) {
+            return response;
+        }
+        byte[] body = Contents.bytes(response.getContent());
+        // The stream can only be read once, so hand Chrome a copy of the body
+        response.setContent(Contents.bytes(body));
+        if (body.length == 0 || body.length > maxEntryBytes) {
+            return response;
+        }
+
+        String key = key(url);
+        String contentType = response.getHeader("Content-Type");
+        synchronized (this) {
+            try {
+                writeAtomically(root.resolve(key + BODY_SUFFIX), body);
+                Properties meta = new Properties();
+                meta.setProperty("url", url);
+                meta.setProperty("contentType", contentType != null ? contentType : "application/octet-stream");
+                try (OutputStream out = Files.newOutputStream(root.resolve(key + META_SUFFIX))) {
+                    meta.store(out, null);
+                }
+                Entry previous = entries.put(key, new Entry(url, meta.getProperty("contentType"), body.length));
+                totalBytes += body.length - (previous != null ? previous.size : 0);
+                stored.incrementAndGet();
+                evictToFit();
+            } catch (IOException e) {
+                logger.warn("Could not cache {}: {}", url, e.getMessage());
+            }
+        }
+        return response;
+    }
+
+    private void evictToFit() {
+        var iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= eldest.getValue().size;
+            deleteFiles(eldest.getKey());
+            evicted.incrementAndGet();
+        }
+    }
+
+    private synchronized void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            totalBytes -= entry.size;
+        }
+        deleteFiles(key);
+    }
+
+    private void deleteFiles(String key) {
+        try {
+            Files.deleteIfExists(root.resolve(key + BODY_SUFFIX));
+            Files.deleteIfExists(root.resolve(key + META_SUFFIX));
+        } catch (IOException e) {
+            logger.debug("Could not delete cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuild the index from disk, oldest access first, so LRU order survives restarts.
+     */
+    private synchronized void loadIndex() throws IOException {
+        List<Path> metas = new ArrayList<>();
+        try (Stream<Path> files = Files.list(root)) {
+            files.filter(p -> p.getFileName().toString().endsWith(META_SUFFIX)).forEach(metas::add);
+        }
+        metas.sort(Comparator.comparing(p -> {
+            try {
+                return Files.getLastModifiedTime(p);
+            } catch (IOException e) {
+                return FileTime.fromMillis(0);
+            }
+        }));
+
+        for (Path metaFile : metas) {
+            String name = metaFile.getFileName().toString();
+            String key = name.substring(0, name.length() - META_SUFFIX.length());
+            Path bodyFile = root.resolve(key + BODY_SUFFIX);
+            Properties meta = new Properties();
+            try (InputStream in = Files.newInputStream(metaFile)) {
+                meta.load(in);
+                // Entries stored under an older, looser URL pattern are no longer served
+                if (!Files.exists(bodyFile) || meta.getProperty("url") == null || !matchesPattern(meta.getProperty("url"))) {
+                    deleteFiles(key);
+                    continue;
+                }
+                long size = Files.size(bodyFile);
+                entries.put(key, new Entry(meta.getProperty("url"), meta.getProperty("contentType"), size));
+                totalBytes += size;
+            } catch (IOException e) {
+                deleteFiles(key);
+            }
+        }
+        evictToFit();
+    }
+
+    private static void writeAtomically(Path target, byte[] data) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), "asset-", ".tmp");
+        try {
+            Files.write(temp, data);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String key(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(url.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+    }
+}
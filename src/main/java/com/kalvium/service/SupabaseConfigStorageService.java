@@ -5,12 +5,17 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import javax.sql.DataSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import com.kalvium.model.AuthConfig;
@@ -22,11 +27,30 @@ public class SupabaseConfigStorageService {
 
     private static final Logger logger = LoggerFactory.getLogger(SupabaseConfigStorageService.class);
     private static final String TABLE_NAME = "worklog_config";
-    private static final String SCREENSHOTS_TABLE = "worklog_screenshots";
+    private static final String SCREENSHOTS_TABLE = "worklog_screenshot_ref";
+    private static final String UPSERT_SQL = """
+        INSERT INTO %s
+        (auth_session_id, keycloak_identity, keycloak_session, tasks_completed, challenges, blockers, updated_at)
+        VALUES (?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
+        ON CONFLICT (auth_session_id) DO UPDATE
+        SET keycloak_identity = EXCLUDED.keycloak_identity, keycloak_session = EXCLUDED.keycloak_session,
+            tasks_completed = EXCLUDED.tasks_completed, challenges = EXCLUDED.challenges,
+            blockers = EXCLUDED.blockers, updated_at = CURRENT_TIMESTAMP
+        """.formatted(TABLE_NAME);
 
     @Autowired(required = false)
     private DataSource dataSource;
 
+    @Autowired
+    @Lazy
+    private ConfigCache configCache;
+
+    @Value("${startup.verify-database:true}")
+    private boolean verifyDatabaseOnStartup;
+
+    /** Set by the startup migration once worklog_config has a unique index on auth_session_id. */
+    private volatile boolean upsertSupported;
+
     @PostConstruct
     public void init() {
         if (dataSource == null) {
@@ -34,7 +58,65 @@ public class SupabaseConfigStorageService {
             return;
         }
 
-        verifyDatabaseConnection();
+        if (verifyDatabaseOnStartup) {
+            verifyDatabaseConnection();
+        }
+        migrateUpsertIndex();
+    }
+
+    /**
+     * ON CONFLICT (auth_session_id) needs a unique index on the column, and the table
+     * is provisioned outside the application. Older SELECT-then-INSERT saves could race
+     * and leave duplicate rows, in which case the index cannot be built: the duplicates
+     * are reported and saves keep using SELECT then INSERT/UPDATE until they are removed.
+     */
+    private void migrateUpsertIndex() {
+        String existsSql = """
+            SELECT 1 FROM pg_index i
+            JOIN pg_attribute a ON a.attrelid = i.indrelid AND a.attnum = i.indkey[0]
+            WHERE i.indrelid = '%s'::regclass AND i.indisunique AND i.indnatts = 1
+              AND a.attname = 'auth_session_id'
+            """.formatted(TABLE_NAME);
+        String duplicatesSql = """
+            SELECT auth_session_id, COUNT(*) FROM %s
+            GROUP BY auth_session_id HAVING COUNT(*) > 1
+            ORDER BY COUNT(*) DESC
+            LIMIT 20
+            """.formatted(TABLE_NAME);
+        String createSql = "CREATE UNIQUE INDEX IF NOT EXISTS %s_auth_session_id_key ON %s (auth_session_id)"
+                .formatted(TABLE_NAME, TABLE_NAME);
+
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(existsSql)) {
+                if (rs.next()) {
+                    upsertSupported = true;
+                    return;
+                }
+            }
+
+            java.util.List<String> duplicates = new java.util.ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery(duplicatesSql)) {
+                while (rs.next()) {
+                    String authId = rs.getString(1);
+                    duplicates.add((authId != null && authId.length() > 8
+                            ? "..." + authId.substring(authId.length() - 8) : authId) + " x" + rs.getInt(2));
+                }
+            }
+            if (!duplicates.isEmpty()) {
+                logger.error("Duplicate auth_session_id values in {} (up to 20 shown): {}. Remove the duplicate rows "
+                        + "so a unique index can be created; until then configs are saved with SELECT then "
+                        + "INSERT/UPDATE", TABLE_NAME, duplicates);
+                return;
+            }
+
+            stmt.execute(createSql);
+            upsertSupported = true;
+            logger.info("✓ Unique index on {}.auth_session_id ready", TABLE_NAME);
+        } catch (SQLException e) {
+            logger.warn("Could not ensure a unique index on {}.auth_session_id ({}); configs are saved with "
+                    + "SELECT then INSERT/UPDATE", TABLE_NAME, e.getMessage());
+        }
     }
 
     private void verifyDatabaseConnection() {
@@ -52,13 +134,16 @@ public class SupabaseConfigStorageService {
                         int rowCount = rs.getInt(1);
                         logger.info("✓ Screenshots count: {}", rowCount);
                     }
+                } catch (SQLException e) {
+                    // Created by ScreenshotStore on first use
+                    logger.info("Screenshot tables not created yet");
                 }
             }
         } catch (SQLException e) {
             logger.error("Failed to connect to database: {}", e.getMessage());
             logger.error("Make sure your tables exist in Supabase:");
             logger.error("  - worklog_config (for user credentials)");
-            logger.error("  - worklog_screenshots (for screenshots)");
+            logger.error("  - worklog_screenshot_ref and screenshot_blob (for screenshots)");
         }
     }
 
@@ -69,57 +154,97 @@ public class SupabaseConfigStorageService {
         return dataSource.getConnection();
     }
 
-    public void saveScreenshot(String authSessionId, String description, byte[] screenshotData) {
-        String sql = """
-            INSERT INTO %s (user_auth_session_id, description, screenshot_data)
-            VALUES (?, ?, ?)
-            """.formatted(SCREENSHOTS_TABLE);
-
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, authSessionId);
-            pstmt.setString(2, description);
-            pstmt.setBytes(3, screenshotData);
-            pstmt.executeUpdate();
-            logger.info("Screenshot saved for user: {}", description);
+    public void saveConfig(AuthConfig config) {
+        try (Connection conn = getConnection()) {
+            if (!upsertSupported) {
+                saveWithoutUpsert(conn, config);
+            } else {
+                try (PreparedStatement pstmt = conn.prepareStatement(UPSERT_SQL)) {
+                    bindUpsert(pstmt, config);
+                    pstmt.executeUpdate();
+                    logger.info("Configuration saved to Supabase");
+                }
+            }
         } catch (SQLException e) {
-            logger.error("Failed to save screenshot", e);
+            logger.error("Failed to save configuration to Supabase", e);
+            throw new RuntimeException("Failed to save configuration to Supabase", e);
         }
+        configCache.invalidate();
     }
 
-    public java.util.List<java.util.Map<String, Object>> getScreenshots(String authSessionId) {
-        java.util.List<java.util.Map<String, Object>> screenshots = new java.util.ArrayList<>();
-        String sql = """
-            SELECT id, description, screenshot_data, created_at
-            FROM %s
-            WHERE user_auth_session_id = ?
-            ORDER BY created_at DESC
-            LIMIT 10
-            """.formatted(SCREENSHOTS_TABLE);
+    /**
+     * Upsert a chunk of configurations in one transaction as a single JDBC batch.
+     * Returns, per config, whether it created a new user (false: updated an existing
+     * one). Either the whole chunk is applied or none of it is. Auth session IDs must
+     * be unique within a chunk. Without the unique index the rows are written one
+     * SELECT-then-INSERT/UPDATE at a time, still in one transaction.
+     */
+    public boolean[] upsertConfigs(List<AuthConfig> configs) {
+        String existingSql = "SELECT auth_session_id FROM %s WHERE auth_session_id = ANY (?)".formatted(TABLE_NAME);
+        boolean[] created = new boolean[configs.size()];
+        if (configs.isEmpty()) {
+            return created;
+        }
 
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Set<String> existing = new HashSet<>();
+                try (PreparedStatement pstmt = conn.prepareStatement(existingSql)) {
+                    Object[] ids = configs.stream().map(AuthConfig::getAuthSessionId).toArray();
+                    pstmt.setArray(1, conn.createArrayOf("text", ids));
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            existing.add(rs.getString(1));
+                        }
+                    }
+                }
 
-            pstmt.setString(1, authSessionId);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    java.util.Map<String, Object> screenshot = new java.util.HashMap<>();
-                    screenshot.put("id", rs.getInt("id"));
-                    screenshot.put("description", rs.getString("description"));
-                    screenshot.put("screenshot_data", rs.getBytes("screenshot_data"));
-                    screenshot.put("created_at", rs.getTimestamp("created_at"));
-                    screenshots.add(screenshot);
+                for (int i = 0; i < configs.size(); i++) {
+                    created[i] = !existing.contains(configs.get(i).getAuthSessionId());
+                }
+                if (upsertSupported) {
+                    try (PreparedStatement pstmt = conn.prepareStatement(UPSERT_SQL)) {
+                        for (AuthConfig config : configs) {
+                            bindUpsert(pstmt, config);
+                            pstmt.addBatch();
+                        }
+                        pstmt.executeBatch();
+                    }
+                } else {
+                    for (AuthConfig config : configs) {
+                        saveWithoutUpsert(conn, config);
+                    }
                 }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
         } catch (SQLException e) {
-            logger.error("Failed to retrieve screenshots", e);
+            SQLException cause = e.getNextException() != null ? e.getNextException() : e;
+            logger.error("Failed to upsert {} configuration(s): {}", configs.size(), cause.getMessage());
+            throw new RuntimeException(cause.getMessage(), e);
         }
+        configCache.invalidate();
+        return created;
+    }
 
-        return screenshots;
+    private void bindUpsert(PreparedStatement pstmt, AuthConfig config) throws SQLException {
+        pstmt.setString(1, config.getAuthSessionId());
+        pstmt.setString(2, config.getKeycloakIdentity());
+        pstmt.setString(3, config.getKeycloakSession());
+        pstmt.setString(4, config.getTasksCompleted());
+        pstmt.setString(5, config.getChallenges());
+        pstmt.setString(6, config.getBlockers());
     }
 
-    public void saveConfig(AuthConfig config) {
+    /**
+     * Save without ON CONFLICT, for tables that lack the unique index.
+     */
+    private void saveWithoutUpsert(Connection conn, AuthConfig config) throws SQLException {
         String checkSql = "SELECT id FROM %s WHERE auth_session_id = ?".formatted(TABLE_NAME);
         String insertSql = """
             INSERT INTO %s
@@ -133,43 +258,33 @@ public class SupabaseConfigStorageService {
             WHERE auth_session_id = ?
             """.formatted(TABLE_NAME);
 
-        try (Connection conn = getConnection()) {
-            Integer existingId = null;
-            try (PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
-                checkStmt.setString(1, config.getAuthSessionId());
-                try (ResultSet rs = checkStmt.executeQuery()) {
-                    if (rs.next()) {
-                        existingId = rs.getInt("id");
-                    }
+        Integer existingId = null;
+        try (PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
+            checkStmt.setString(1, config.getAuthSessionId());
+            try (ResultSet rs = checkStmt.executeQuery()) {
+                if (rs.next()) {
+                    existingId = rs.getInt("id");
                 }
             }
+        }
 
-            if (existingId != null) {
-                try (PreparedStatement pstmt = conn.prepareStatement(updateSql)) {
-                    pstmt.setString(1, config.getKeycloakIdentity());
-                    pstmt.setString(2, config.getKeycloakSession());
-                    pstmt.setString(3, config.getTasksCompleted());
-                    pstmt.setString(4, config.getChallenges());
-                    pstmt.setString(5, config.getBlockers());
-                    pstmt.setString(6, config.getAuthSessionId());
-                    pstmt.executeUpdate();
-                    logger.info("Configuration updated in Supabase for user (id: {})", existingId);
-                }
-            } else {
-                try (PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
-                    pstmt.setString(1, config.getAuthSessionId());
-                    pstmt.setString(2, config.getKeycloakIdentity());
-                    pstmt.setString(3, config.getKeycloakSession());
-                    pstmt.setString(4, config.getTasksCompleted());
-                    pstmt.setString(5, config.getChallenges());
-                    pstmt.setString(6, config.getBlockers());
-                    pstmt.executeUpdate();
-                    logger.info("New user configuration saved to Supabase");
-                }
+        if (existingId != null) {
+            try (PreparedStatement pstmt = conn.prepareStatement(updateSql)) {
+                pstmt.setString(1, config.getKeycloakIdentity());
+                pstmt.setString(2, config.getKeycloakSession());
+                pstmt.setString(3, config.getTasksCompleted());
+                pstmt.setString(4, config.getChallenges());
+                pstmt.setString(5, config.getBlockers());
+                pstmt.setString(6, config.getAuthSessionId());
+                pstmt.executeUpdate();
+                logger.info("Configuration updated in Supabase for user (id: {})", existingId);
+            }
+        } else {
+            try (PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
+                bindUpsert(pstmt, config);
+                pstmt.executeUpdate();
+                logger.info("New user configuration saved to Supabase");
             }
-        } catch (SQLException e) {
-            logger.error("Failed to save configuration to Supabase", e);
-            throw new RuntimeException("Failed to save configuration to Supabase", e);
         }
     }
 
@@ -197,7 +312,45 @@ public class SupabaseConfigStorageService {
         }
     }
 
+    public AuthConfig findConfig(String authSessionId) {
+        String sql = "SELECT * FROM %s WHERE auth_session_id = ?".formatted(TABLE_NAME);
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, authSessionId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    AuthConfig config = new AuthConfig();
+                    config.setAuthSessionId(rs.getString("auth_session_id"));
+                    config.setKeycloakIdentity(rs.getString("keycloak_identity"));
+                    config.setKeycloakSession(rs.getString("keycloak_session"));
+                    config.setTasksCompleted(rs.getString("tasks_completed"));
+                    config.setChallenges(rs.getString("challenges"));
+                    config.setBlockers(rs.getString("blockers"));
+                    return config;
+                }
+            }
+            return null;
+        } catch (SQLException e) {
+            logger.error("Failed to load configuration from Supabase", e);
+            return null;
+        }
+    }
+
     public java.util.List<AuthConfig> loadAllConfigs() {
+        try {
+            java.util.List<AuthConfig> configs = queryAllConfigs();
+            logger.info("Loaded {} user configurations from Supabase", configs.size());
+            return configs;
+        } catch (SQLException e) {
+            logger.error("Failed to load configurations from Supabase", e);
+            return new java.util.ArrayList<>();
+        }
+    }
+
+    /** Like {@link #loadAllConfigs()}, but a failure is an error rather than an empty list. */
+    java.util.List<AuthConfig> queryAllConfigs() throws SQLException {
         java.util.List<AuthConfig> configs = new java.util.ArrayList<>();
         String sql = "SELECT * FROM %s ORDER BY id".formatted(TABLE_NAME);
 
@@ -215,11 +368,19 @@ public class SupabaseConfigStorageService {
                 config.setBlockers(rs.getString("blockers"));
                 configs.add(config);
             }
-            logger.info("Loaded {} user configurations from Supabase", configs.size());
             return configs;
+        }
+    }
+
+    /** Round trip to the database; returns its latency in milliseconds. */
+    public long ping() {
+        long start = System.currentTimeMillis();
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("SELECT 1");
+            return System.currentTimeMillis() - start;
         } catch (SQLException e) {
-            logger.error("Failed to load configurations from Supabase", e);
-            return configs;
+            throw new RuntimeException("Database unreachable: " + e.getMessage(), e);
         }
     }
 
@@ -265,5 +426,6 @@ public class SupabaseConfigStorageService {
             logger.error("Failed to reset Supabase database", e);
             throw new RuntimeException("Failed to reset Supabase database", e);
         }
+        configCache.invalidate();
     }
 }
@@ -0,0 +1,465 @@
+package com.kalvium.service;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Database-backed daily work queue shared by every instance. One row per user
+ * and run date; workers claim rows with a time-limited lease that they renew
+ * while the run is in progress. Rows whose lease expired (the node died) are
+ * claimable again. Failed rows are either rescheduled with a delay or moved to
+ * the DEAD (dead-letter) state.
+ */
+@Service
+public class WorkQueueService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkQueueService.class);
+    private static final String QUEUE_TABLE = "worklog_queue";
+    private static final String RUNS_TABLE = "worklog_queue_runs";
+    private static final String CONFIG_TABLE = "worklog_config";
+    private static final long ENQUEUE_LOCK_KEY = 0x776F726B6C6F67L;
+
+    @Autowired(required = false)
+    private DataSource dataSource;
+
+    @Value("${queue.lease-seconds:180}")
+    private int leaseSeconds;
+
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName() + "-"
+            + UUID.randomUUID().toString().substring(0, 8);
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        DONE,
+        DEAD
+    }
+
+    public static class QueueItem {
+        private final long id;
+        private final LocalDate runDate;
+        private final String authSessionId;
+        private final int attempts;
+        private volatile long leaseDeadlineMillis;
+        private volatile boolean leaseLost;
+
+        QueueItem(long id, LocalDate runDate, String authSessionId, int attempts, long leaseDeadlineMillis) {
+            this.id = id;
+            this.runDate = runDate;
+            this.authSessionId = authSessionId;
+            this.attempts = attempts;
+            this.leaseDeadlineMillis = leaseDeadlineMillis;
+        }
+
+        public long getId() { return id; }
+        public LocalDate getRunDate() { return runDate; }
+        public String getAuthSessionId() { return authSessionId; }
+
+        /**
+         * Number of times this row has been claimed, including the current claim.
+         */
+        public int getAttempts() { return attempts; }
+
+        /**
+         * False once a renewal found the row taken over, or the lease ran out while
+         * renewals were failing. Another node may then claim the row, so the holder
+         * must not submit.
+         */
+        public boolean isLeaseHeld() {
+            return !leaseLost && System.currentTimeMillis() < leaseDeadlineMillis;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (dataSource == null) {
+            return;
+        }
+
+        String queueSql = """
+            CREATE TABLE IF NOT EXISTS %s (
+                id BIGSERIAL PRIMARY KEY,
+                run_date DATE NOT NULL,
+                auth_session_id TEXT NOT NULL,
+                status TEXT NOT NULL DEFAULT 'PENDING',
+                outcome TEXT,
+                attempts INT NOT NULL DEFAULT 0,
+                next_attempt_at TIMESTAMPTZ,
+                last_error TEXT,
+                lease_owner TEXT,
+                lease_expires_at TIMESTAMPTZ,
+                created_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                updated_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                UNIQUE (run_date, auth_session_id)
+            )
+            """.formatted(QUEUE_TABLE);
+        String indexSql = "CREATE INDEX IF NOT EXISTS %s_claim_idx ON %s (status, id)".formatted(QUEUE_TABLE, QUEUE_TABLE);
+        String retryColumnsSql = """
+            ALTER TABLE %s
+                ADD COLUMN IF NOT EXISTS attempts INT NOT NULL DEFAULT 0,
+                ADD COLUMN IF NOT EXISTS next_attempt_at TIMESTAMPTZ,
+                ADD COLUMN IF NOT EXISTS last_error TEXT
+            """.formatted(QUEUE_TABLE);
+        String runsSql = """
+            CREATE TABLE IF NOT EXISTS %s (
+                run_date DATE PRIMARY KEY,
+                enqueued_by TEXT,
+                enqueued_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                summary_sent_at TIMESTAMPTZ
+            )
+            """.formatted(RUNS_TABLE);
+
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(queueSql);
+            stmt.execute(retryColumnsSql);
+            stmt.execute(indexSql);
+            stmt.execute(runsSql);
+            logger.info("✓ Work queue ready (node {})", nodeId);
+        } catch (SQLException e) {
+            logger.error("Failed to create work queue tables: {}", e.getMessage());
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Add every configured user to the queue for the given date. Only the node
+     * holding the advisory lock enqueues; the others return immediately.
+     * Without force, a date that was already enqueued is left alone; with force,
+     * finished rows for that date are reset to pending.
+     * @return number of rows added or reset, or -1 if another node holds the lock
+     */
+    public int enqueue(LocalDate runDate, boolean force) {
+        String markRunSql = force
+                ? """
+                  INSERT INTO %s (run_date, enqueued_by) VALUES (?, ?)
+                  ON CONFLICT (run_date) DO UPDATE SET enqueued_by = EXCLUDED.enqueued_by,
+                      enqueued_at = CURRENT_TIMESTAMP, summary_sent_at = NULL
+                  """.formatted(RUNS_TABLE)
+                : """
+                  INSERT INTO %s (run_date, enqueued_by) VALUES (?, ?)
+                  ON CONFLICT (run_date) DO NOTHING
+                  """.formatted(RUNS_TABLE);
+        String enqueueSql = """
+            INSERT INTO %s (run_date, auth_session_id)
+            SELECT ?, auth_session_id FROM %s
+            ON CONFLICT (run_date, auth_session_id) DO %s
+            """.formatted(QUEUE_TABLE, CONFIG_TABLE, force
+                ? "UPDATE SET status = 'PENDING', outcome = NULL, attempts = 0, next_attempt_at = NULL, "
+                  + "last_error = NULL, updated_at = CURRENT_TIMESTAMP "
+                  + "WHERE %s.status IN ('DONE', 'DEAD')".formatted(QUEUE_TABLE)
+                : "NOTHING");
+
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement lock = conn.prepareStatement("SELECT pg_try_advisory_xact_lock(?)")) {
+                    lock.setLong(1, ENQUEUE_LOCK_KEY);
+                    try (ResultSet rs = lock.executeQuery()) {
+                        if (!rs.next() || !rs.getBoolean(1)) {
+                            conn.rollback();
+                            logger.info("Another node is enqueuing the {} run, skipping", runDate);
+                            return -1;
+                        }
+                    }
+                }
+
+                try (PreparedStatement mark = conn.prepareStatement(markRunSql)) {
+                    mark.setDate(1, Date.valueOf(runDate));
+                    mark.setString(2, nodeId);
+                    if (mark.executeUpdate() == 0) {
+                        conn.rollback();
+                        logger.info("Run for {} was already enqueued", runDate);
+                        return 0;
+                    }
+                }
+
+                int added;
+                try (PreparedStatement insert = conn.prepareStatement(enqueueSql)) {
+                    insert.setDate(1, Date.valueOf(runDate));
+                    added = insert.executeUpdate();
+                }
+                conn.commit();
+                logger.info("Enqueued {} user(s) for {}", added, runDate);
+                return added;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to enqueue users for {}", runDate, e);
+            throw new RuntimeException("Failed to enqueue users", e);
+        }
+    }
+
+    /**
+     * Lease the next pending row that is due, or a running row whose lease has expired.
+     * @return the claimed item, or null if nothing is claimable
+     */
+    public QueueItem claim() {
+        String sql = """
+            UPDATE %s SET status = 'RUNNING', lease_owner = ?,
+                lease_expires_at = CURRENT_TIMESTAMP + (? * INTERVAL '1 second'),
+                attempts = attempts + 1, updated_at = CURRENT_TIMESTAMP
+            WHERE id = (
+                SELECT id FROM %s
+                WHERE (status = 'PENDING' AND (next_attempt_at IS NULL OR next_attempt_at <= CURRENT_TIMESTAMP))
+                   OR (status = 'RUNNING' AND lease_expires_at < CURRENT_TIMESTAMP)
+                ORDER BY id
+                FOR UPDATE SKIP LOCKED
+                LIMIT 1
+            )
+            RETURNING id, run_date, auth_session_id, attempts
+            """.formatted(QUEUE_TABLE, QUEUE_TABLE);
+
+        // Measured from before the statement is sent, so the local deadline never outlives the database's
+        long leaseDeadline = System.currentTimeMillis() + leaseSeconds * 1000L;
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, nodeId);
+            pstmt.setInt(2, leaseSeconds);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return new QueueItem(rs.getLong("id"), rs.getDate("run_date").toLocalDate(),
+                            rs.getString("auth_session_id"), rs.getInt("attempts"), leaseDeadline);
+                }
+            }
+            return null;
+        } catch (SQLException e) {
+            logger.warn("Failed to claim work queue item: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Extend the lease on an item this node holds. When the database cannot be
+     * reached the lease is still held until its deadline passes, and lost after.
+     * @return false if the lease was lost
+     */
+    public boolean renew(QueueItem item) {
+        if (item.leaseLost) {
+            return false;
+        }
+        String sql = """
+            UPDATE %s SET lease_expires_at = CURRENT_TIMESTAMP + (? * INTERVAL '1 second')
+            WHERE id = ? AND status = 'RUNNING' AND lease_owner = ?
+            """.formatted(QUEUE_TABLE);
+
+        long leaseDeadline = System.currentTimeMillis() + leaseSeconds * 1000L;
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, leaseSeconds);
+            pstmt.setLong(2, item.getId());
+            pstmt.setString(3, nodeId);
+            if (pstmt.executeUpdate() == 1) {
+                item.leaseDeadlineMillis = leaseDeadline;
+                return true;
+            }
+            item.leaseLost = true;
+            return false;
+        } catch (SQLException e) {
+            logger.warn("Failed to renew lease on queue item {}: {}", item.getId(), e.getMessage());
+            if (!item.isLeaseHeld()) {
+                item.leaseLost = true;
+                return false;
+            }
+            return true;
+        }
+    }
+
+    public void complete(QueueItem item, String outcome) {
+        finish(item, Status.DONE, outcome, null, 0);
+    }
+
+    /**
+     * Put the item back in the queue, claimable again after the delay.
+     */
+    public void retryLater(QueueItem item, String outcome, String error, long delaySeconds) {
+        finish(item, Status.PENDING, outcome, error, delaySeconds);
+    }
+
+    public void deadLetter(QueueItem item, String outcome, String error) {
+        finish(item, Status.DEAD, outcome, error, 0);
+    }
+
+    /**
+     * Dead-lettered rows, newest first.
+     */
+    public List<Map<String, Object>> getDeadLetters() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        String sql = """
+            SELECT id, run_date, auth_session_id, attempts, outcome, last_error, updated_at
+            FROM %s WHERE status = 'DEAD'
+            ORDER BY updated_at DESC
+            LIMIT 100
+            """.formatted(QUEUE_TABLE);
+
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                String authId = rs.getString("auth_session_id");
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("id", rs.getLong("id"));
+                row.put("runDate", rs.getDate("run_date").toString());
+                row.put("authSessionId", authId.length() > 8 ? "..." + authId.substring(authId.length() - 8) : authId);
+                row.put("attempts", rs.getInt("attempts"));
+                row.put("outcome", rs.getString("outcome"));
+                row.put("lastError", rs.getString("last_error"));
+                row.put("updatedAt", rs.getTimestamp("updated_at"));
+                rows.add(row);
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to list dead-lettered queue items", e);
+        }
+        return rows;
+    }
+
+    /**
+     * Move dead-lettered rows for the date back to pending with a fresh attempt budget.
+     * The run's summary is re-armed so it is sent again once they finish.
+     * @return number of rows requeued
+     */
+    public int requeueDeadLetters(LocalDate runDate) {
+        String requeueSql = """
+            UPDATE %s SET status = 'PENDING', attempts = 0, next_attempt_at = NULL, updated_at = CURRENT_TIMESTAMP
+            WHERE run_date = ? AND status = 'DEAD'
+            """.formatted(QUEUE_TABLE);
+        String rearmSql = "UPDATE %s SET summary_sent_at = NULL WHERE run_date = ?".formatted(RUNS_TABLE);
+
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement requeue = conn.prepareStatement(requeueSql);
+                 PreparedStatement rearm = conn.prepareStatement(rearmSql)) {
+                requeue.setDate(1, Date.valueOf(runDate));
+                int count = requeue.executeUpdate();
+                if (count > 0) {
+                    rearm.setDate(1, Date.valueOf(runDate));
+                    rearm.executeUpdate();
+                }
+                conn.commit();
+                logger.info("Requeued {} dead-lettered user(s) for {}", count, runDate);
+                return count;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to requeue dead-lettered users for {}", runDate, e);
+            throw new RuntimeException("Failed to requeue dead-lettered users", e);
+        }
+    }
+
+    private void finish(QueueItem item, Status status, String outcome, String error, long delaySeconds) {
+        String sql = """
+            UPDATE %s SET status = ?, outcome = ?, last_error = ?,
+                next_attempt_at = CASE WHEN ? > 0 THEN CURRENT_TIMESTAMP + (? * INTERVAL '1 second') END,
+                lease_owner = NULL, lease_expires_at = NULL, updated_at = CURRENT_TIMESTAMP
+            WHERE id = ? AND lease_owner = ?
+            """.formatted(QUEUE_TABLE);
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, status.name());
+            pstmt.setString(2, outcome);
+            pstmt.setString(3, error);
+            pstmt.setLong(4, delaySeconds);
+            pstmt.setLong(5, delaySeconds);
+            pstmt.setLong(6, item.getId());
+            pstmt.setString(7, nodeId);
+            if (pstmt.executeUpdate() == 0) {
+                logger.warn("Lease on queue item {} was lost before it could be updated", item.getId());
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to update queue item {}", item.getId(), e);
+        }
+    }
+
+    /**
+     * Atomically mark the run's summary as sent once no row for the date is
+     * pending or running. Exactly one caller across all nodes gets true.
+     */
+    public boolean claimSummary(LocalDate runDate) {
+        String sql = """
+            UPDATE %s SET summary_sent_at = CURRENT_TIMESTAMP
+            WHERE run_date = ? AND summary_sent_at IS NULL
+              AND NOT EXISTS (
+                  SELECT 1 FROM %s WHERE run_date = ? AND status IN ('PENDING', 'RUNNING')
+              )
+            """.formatted(RUNS_TABLE, QUEUE_TABLE);
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setDate(1, Date.valueOf(runDate));
+            pstmt.setDate(2, Date.valueOf(runDate));
+            return pstmt.executeUpdate() == 1;
+        } catch (SQLException e) {
+            logger.error("Failed to check run summary for {}: {}", runDate, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Row counts for a run date keyed by status, and by outcome under "outcome:" keys.
+     */
+    public Map<String, Integer> getRunCounts(LocalDate runDate) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        String sql = """
+            SELECT status, COALESCE(outcome, '') AS outcome, COUNT(*) AS total
+            FROM %s WHERE run_date = ?
+            GROUP BY status, outcome
+            """.formatted(QUEUE_TABLE);
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setDate(1, Date.valueOf(runDate));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int total = rs.getInt("total");
+                    counts.merge(rs.getString("status"), total, Integer::sum);
+                    if (!rs.getString("outcome").isEmpty()) {
+                        counts.merge("outcome:" + rs.getString("outcome"), total, Integer::sum);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to count queue rows for {}: {}", runDate, e.getMessage());
+        }
+        return counts;
+    }
+
+    private Connection getConnection() throws SQLException {
+        if (dataSource == null) {
+            throw new SQLException("DataSource is not configured");
+        }
+        return dataSource.getConnection();
+    }
+}
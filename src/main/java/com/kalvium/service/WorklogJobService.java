@@ -0,0 +1,237 @@
+package com.kalvium.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.kalvium.model.AuthConfig;
+import com.kalvium.model.RunResult;
+import com.kalvium.model.StepEvent;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs manual worklog submissions in the background so request threads are
+ * released immediately. Progress is streamed to subscribers as step events and
+ * finished jobs are kept for a while so results and screenshots can be fetched.
+ */
+@Service
+public class WorklogJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorklogJobService.class);
+    private static final long SSE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    @Autowired
+    private WorklogService worklogService;
+
+    @Value("${job.worker-count:1}")
+    private int workerCount;
+
+    @Value("${job.queue-capacity:10}")
+    private int queueCapacity;
+
+    @Value("${job.retention-minutes:30}")
+    private long retentionMinutes;
+
+    private ThreadPoolExecutor executor;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+
+    public static class Job {
+        private final String id;
+        private final String engine;
+        private final long createdAt;
+        private volatile long startedAt;
+        private volatile long finishedAt;
+        private volatile State state = State.QUEUED;
+        private volatile RunResult result;
+        private final List<StepEvent> events = new CopyOnWriteArrayList<>();
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+        Job(String id, String engine) {
+            this.id = id;
+            this.engine = engine;
+            this.createdAt = System.currentTimeMillis();
+        }
+
+        public String getId() { return id; }
+        public State getState() { return state; }
+        public RunResult getResult() { return result; }
+        public List<StepEvent> getEvents() { return events; }
+
+        public boolean isFinished() {
+            return state == State.SUCCEEDED || state == State.FAILED;
+        }
+
+        /**
+         * Job status plus the events recorded after the given index, for polling clients.
+         */
+        public Map<String, Object> describe(int since) {
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("jobId", id);
+            status.put("state", state);
+            status.put("engine", engine);
+            status.put("createdAt", createdAt);
+            status.put("startedAt", startedAt);
+            status.put("finishedAt", finishedAt);
+            List<StepEvent> snapshot = new ArrayList<>(events);
+            int from = Math.max(0, Math.min(since, snapshot.size()));
+            status.put("nextEvent", snapshot.size());
+            status.put("events", snapshot.subList(from, snapshot.size()));
+            return status;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(Math.max(1, workerCount), Math.max(1, workerCount), 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+                    Thread thread = new Thread(r, "worklog-job-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Queue a submission for the given config.
+     * @throws IllegalStateException if the job queue is full
+     */
+    public Job submit(AuthConfig config, String engine) {
+        Job job = new Job(UUID.randomUUID().toString(), engine);
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job, config));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            throw new IllegalStateException("Too many runs queued, try again later");
+        }
+        logger.info("Queued worklog job {} ({} waiting)", job.id, executor.getQueue().size());
+        return job;
+    }
+
+    public Job getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * Stream a job's step events, replaying those after lastEventId first so a
+     * reconnecting client does not miss or duplicate steps.
+     */
+    public SseEmitter subscribe(Job job, int lastEventId) {
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MILLIS);
+        emitter.onCompletion(() -> job.emitters.remove(emitter));
+        emitter.onTimeout(() -> job.emitters.remove(emitter));
+        emitter.onError(e -> job.emitters.remove(emitter));
+
+        synchronized (job) {
+            try {
+                List<StepEvent> replay = new ArrayList<>(job.events);
+                for (int i = Math.max(0, lastEventId + 1); i < replay.size(); i++) {
+                    sendStep(emitter, i, replay.get(i));
+                }
+                if (job.isFinished()) {
+                    sendDone(emitter, job);
+                    emitter.complete();
+                } else {
+                    job.emitters.add(emitter);
+                }
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+        }
+        return emitter;
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void purgeFinishedJobs() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(retentionMinutes);
+        jobs.values().removeIf(job -> job.isFinished() && job.finishedAt < cutoff);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @SuppressWarnings("UseSpecificCatch")
+    private void run(Job job, AuthConfig config) {
+        job.state = State.RUNNING;
+        job.startedAt = System.currentTimeMillis();
+        RunResult result;
+        try {
+            result = worklogService.submitWorklog(config, job.engine, event -> publish(job, event));
+        } catch (Exception e) {
+            logger.error("Worklog job {} failed: {}", job.id, e.getMessage(), e);
+            result = RunResult.error("ERROR: " + e.getMessage(), null);
+        }
+
+        synchronized (job) {
+            job.result = result;
+            job.finishedAt = System.currentTimeMillis();
+            job.state = result.isSuccess() ? State.SUCCEEDED : State.FAILED;
+            for (SseEmitter emitter : job.emitters) {
+                try {
+                    sendDone(emitter, job);
+                    emitter.complete();
+                } catch (IOException e) {
+                    emitter.completeWithError(e);
+                }
+            }
+            job.emitters.clear();
+        }
+        logger.info("Worklog job {} finished: {}", job.id, job.state);
+    }
+
+    private void publish(Job job, StepEvent event) {
+        synchronized (job) {
+            job.events.add(event);
+            int index = job.events.size() - 1;
+            for (SseEmitter emitter : job.emitters) {
+                try {
+                    sendStep(emitter, index, event);
+                } catch (IOException e) {
+                    job.emitters.remove(emitter);
+                    emitter.completeWithError(e);
+                }
+            }
+        }
+    }
+
+    private void sendStep(SseEmitter emitter, int index, StepEvent event) throws IOException {
+        emitter.send(SseEmitter.event().id(String.valueOf(index)).name("step").data(event));
+    }
+
+    private void sendDone(SseEmitter emitter, Job job) throws IOException {
+        Map<String, Object> done = new LinkedHashMap<>();
+        done.put("jobId", job.id);
+        done.put("state", job.state);
+        done.put("message", job.result != null ? job.result.getMessage() : null);
+        emitter.send(SseEmitter.event().name("done").data(done));
+    }
+}
@@ -1,20 +1,16 @@
 package com.kalvium.service;
 
+import java.net.URI;
 import java.time.Duration;
-import java.util.ArrayList;
-import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import org.openqa.selenium.By;
 import org.openqa.selenium.Cookie;
 import org.openqa.selenium.JavascriptExecutor;
-import org.openqa.selenium.OutputType;
-import org.openqa.selenium.PageLoadStrategy;
-import org.openqa.selenium.TakesScreenshot;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
-import org.openqa.selenium.chrome.ChromeDriver;
-import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.WebDriverWait;
 import org.slf4j.Logger;
@@ -24,271 +20,322 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.kalvium.model.AuthConfig;
+import com.kalvium.model.RunResult;
+import com.kalvium.model.StepEvent;
+import com.kalvium.util.RunLog;
+import com.kalvium.util.SessionCookies;
+import com.kalvium.util.WaitEngine;
 import com.kalvium.util.XPathLoader;
 
-import io.github.bonigarcia.wdm.WebDriverManager;
-
 @Service
 public class WorklogService {
 
     private static final Logger logger = LoggerFactory.getLogger(WorklogService.class);
     private static final int MAX_NAVIGATION_RETRIES = 3;
-    private static final int PAGE_LOAD_TIMEOUT_SECONDS = 60;
-    private static final int ELEMENT_WAIT_TIMEOUT_SECONDS = 30;
+    public static final String ENGINE_SELENIUM = "selenium";
+    public static final String ENGINE_HTTP = "http";
+    private static final String SUBMITTED_MESSAGE = "SUCCESS: Worklog submitted!";
+    private static final String NOTHING_PENDING_MESSAGE = "SUCCESS: No pending worklogs found to submit.";
+    private static final String SESSION_EXPIRED_MESSAGE = "ERROR: Session expired - please update your Kalvium cookies";
+    private static final long SCREENSHOT_COLLECT_TIMEOUT_MILLIS = 15000;
+    private static final String INTERNSHIPS_PATH = "/internships";
+    private static final Duration ELEMENT_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration SUBMIT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration SETTLE_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration SETTLE_QUIET = Duration.ofMillis(400);
+    private static final Duration NETWORK_IDLE = Duration.ofMillis(500);
+    private static final String SELECT_FIRST_OPTION_SCRIPT =
+            "var select = arguments[0];" +
+            "select.selectedIndex = 0;" +
+            "select.dispatchEvent(new Event('change', { bubbles: true }));" +
+            "select.dispatchEvent(new Event('input', { bubbles: true }));";
 
     @Autowired
-    private SupabaseConfigStorageService supabaseStorage;
+    private ScreenshotService screenshotService;
 
-    @Value("${chrome.headless:true}")
-    private boolean chromeHeadless;
+    @Autowired
+    private ChromeDriverPool chromeDriverPool;
 
-    private static class Screenshot {
-        String description;
-        String base64Data;
+    @Autowired
+    private HttpWorklogEngine httpWorklogEngine;
+
+    @Autowired
+    private NetworkPolicy networkPolicy;
+
+    @Autowired
+    private StaticAssetCache assetCache;
+
+    @Autowired
+    private RunHistoryService runHistory;
 
-        Screenshot(String description, String base64Data) {
-            this.description = description;
-            this.base64Data = base64Data;
+    @Autowired
+    private KalviumPortalClient portalClient;
+
+    @Autowired
+    private FormFillScript formFillScript;
+
+    @Value("${form.fill.mode:bundled}")
+    private String formFillMode;
+
+    @Value("${worklog.engine:selenium}")
+    private String defaultEngine;
+
+    /**
+     * The portal bounced the browser to the login page, so the stored cookies are no longer valid.
+     */
+    private static class SessionExpiredException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        SessionExpiredException(String message) {
+            super(message);
         }
     }
 
-    @SuppressWarnings("UseSpecificCatch")
-    public String submitWorklog(AuthConfig config) {
-        WebDriver driver = null;
-        List<String> automationSteps = new ArrayList<>();
-        List<Screenshot> screenshots = new ArrayList<>();
+    public RunResult submitWorklog(AuthConfig config) {
+        return submitWorklog(config, defaultEngine);
+    }
 
-        try {
-            if (config == null || config.getAuthSessionId() == null) {
-                return "ERROR: No configuration provided.";
-            }
+    public RunResult submitWorklog(AuthConfig config, String engine) {
+        return submitWorklog(config, engine, null);
+    }
 
-            addStep(automationSteps, "Killing any existing Chrome processes...");
-            killAllChromeProcesses();
-            Thread.sleep(3000);
+    /**
+     * Submit with the default engine, recording a preflight check that already ran
+     * as the first step of the run.
+     */
+    public RunResult submitWorklog(AuthConfig config, PreflightService.Result preflight) {
+        return submitWorklog(config, null, null, preflight);
+    }
 
-            addStep(automationSteps, "Setting up ChromeDriver...");
-            WebDriverManager.chromedriver().setup();
-            ChromeOptions options = createOptimizedChromeOptions();
+    public RunResult submitWorklog(AuthConfig config, String engine, Consumer<StepEvent> listener) {
+        return submitWorklog(config, engine, listener, null);
+    }
 
-            addStep(automationSteps, "Opening Chrome browser...");
-            driver = new ChromeDriver(options);
-            driver.manage().timeouts().pageLoadTimeout(Duration.ofSeconds(PAGE_LOAD_TIMEOUT_SECONDS));
-            driver.manage().timeouts().scriptTimeout(Duration.ofSeconds(30));
-            driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(5));
+    /**
+     * Submit a worklog using the given engine ("selenium" or "http"), or the configured
+     * default when engine is null. The listener, if any, receives step events as they happen.
+     * The HTTP engine falls back to the browser when the portal answers in an unexpected way.
+     * A preflight result, if given, is recorded as a timed step ahead of the engine's own.
+     */
+    @SuppressWarnings("UseSpecificCatch")
+    public RunResult submitWorklog(AuthConfig config, String engine, Consumer<StepEvent> listener,
+                                   PreflightService.Result preflight) {
+        if (config == null || config.getAuthSessionId() == null) {
+            return RunResult.error("ERROR: No configuration provided.", null)
+                    .withFailureKind(RunResult.FailureKind.TERMINAL);
+        }
 
-            WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(ELEMENT_WAIT_TIMEOUT_SECONDS));
-            JavascriptExecutor js = (JavascriptExecutor) driver;
+        boolean useHttp = ENGINE_HTTP.equalsIgnoreCase(engine != null ? engine : defaultEngine);
+        RunLog runLog = new RunLog(describeUser(config), useHttp ? ENGINE_HTTP : ENGINE_SELENIUM);
+        runLog.addListener(listener);
+        if (preflight != null) {
+            runLog.record("preflight", System.currentTimeMillis() - preflight.getLatencyMillis(),
+                    preflight.getLatencyMillis(), StepEvent.Outcome.OK, "Preflight: " + preflight,
+                    RunLog.attrs("status", preflight.getStatus().name()));
+        }
+        if (!useHttp) {
+            return finish(runLog, submitWithBrowser(config, runLog));
+        }
 
-            addStep(automationSteps, "Navigating to kalvium.community with retry logic...");
-            navigateWithRetry(driver, js, "https://kalvium.community", automationSteps);
+        runLog.note("Using browserless HTTP engine");
+        RunResult result;
+        try {
+            HttpWorklogEngine.Outcome outcome = httpWorklogEngine.submit(config, runLog);
+            switch (outcome) {
+                case NOTHING_PENDING:
+                    result = RunResult.success(NOTHING_PENDING_MESSAGE, runLog.messages());
+                    break;
+                case SESSION_EXPIRED:
+                    result = RunResult.error(SESSION_EXPIRED_MESSAGE, runLog.messages())
+                            .withFailureKind(RunResult.FailureKind.TERMINAL);
+                    break;
+                default:
+                    runLog.note("Worklog submitted successfully!");
+                    result = RunResult.success(SUBMITTED_MESSAGE, runLog.messages());
+                    break;
+            }
+        } catch (HttpWorklogEngine.UnsupportedResponseException e) {
+            logger.warn("HTTP engine failed, falling back to browser: {}", e.getMessage());
+            runLog.note("HTTP engine fell back to browser: " + e.getMessage());
+            result = submitWithBrowser(config, runLog);
+        } catch (Exception e) {
+            logger.error("Error: " + e.getMessage(), e);
+            runLog.note("ERROR: " + e.getMessage());
+            result = RunResult.error("ERROR: " + e.getMessage(), runLog.messages())
+                    .withFailureKind(RunResult.FailureKind.RETRYABLE);
+        }
+        return finish(runLog, result);
+    }
 
-            Thread.sleep(2000);
-            addStep(automationSteps, "Page loaded successfully, current URL: " + driver.getCurrentUrl());
+    @SuppressWarnings("UseSpecificCatch")
+    private RunResult submitWithBrowser(AuthConfig config, RunLog runLog) {
+        ChromeDriverPool.Session session = null;
+        WebDriver driver = null;
+        StaticAssetCache.RunStats assetStats = null;
+        ScreenshotService.Capture screenshots = screenshotService.begin(config.getAuthSessionId(), runLog.getRunId());
+        RunResult.Status status;
+        String message;
+        RunResult.FailureKind failureKind = null;
 
-            addStep(automationSteps, "Injecting authentication cookies...");
-            injectCookies(driver, config);
-            addStep(automationSteps, "Cookies injected successfully");
+        try {
+            runLog.note("Acquiring Chrome session from pool...");
+            ChromeDriverPool.Session acquired = runLog.call("acquire browser", chromeDriverPool::acquire);
+            session = acquired;
+            WebDriver browser = acquired.getDriver();
+            driver = browser;
+            runLog.note("Using Chrome session #" + acquired.getId() + " (use " + acquired.getUses() + ")");
+            networkPolicy.apply(browser);
+            assetStats = assetCache.attach(browser);
+            long networkRequests = 0;
+            long networkBytes = 0;
+
+            JavascriptExecutor js = (JavascriptExecutor) browser;
+            WaitEngine waits = new WaitEngine(browser, runLog);
+
+            String homeUrl = portalClient.getBaseUrl();
+            String internshipsUrl = homeUrl + INTERNSHIPS_PATH;
+            runLog.run("navigation", RunLog.attrs("url", homeUrl), () -> {
+                runLog.note("Navigating to " + homeUrl + " with retry logic...");
+                navigateWithRetry(browser, js, homeUrl, runLog);
+                waits.domSettled(SETTLE_QUIET, SETTLE_TIMEOUT);
+                runLog.note("Page loaded successfully, current URL: " + browser.getCurrentUrl());
+            });
+            NetworkPolicy.PageStats homeStats = networkPolicy.measure(browser);
+            if (homeStats != null) {
+                runLog.note("Network (home): " + homeStats);
+                networkRequests += homeStats.getRequests();
+                networkBytes += homeStats.getTransferBytes();
+            }
 
-            addStep(automationSteps, "Navigating to internships page...");
-            navigateWithRetry(driver, js, "https://kalvium.community/internships", automationSteps);
+            runLog.run("cookie injection", () -> {
+                runLog.note("Injecting authentication cookies...");
+                injectCookies(browser, config);
+                runLog.note("Cookies injected successfully");
+            });
 
-            Thread.sleep(3000);
+            runLog.run("navigation", RunLog.attrs("url", internshipsUrl), () -> {
+                runLog.note("Navigating to internships page...");
+                navigateWithRetry(browser, js, internshipsUrl, runLog);
+                if (portalClient.isLoginUrl(browser.getCurrentUrl())) {
+                    throw new SessionExpiredException("Redirected to login - session cookies were rejected");
+                }
+            });
 
-            addStep(automationSteps, "Waiting for table to load...");
             try {
-                wait.until(ExpectedConditions.presenceOfElementLocated(
-                    By.xpath(XPathLoader.get("table.main"))));
-                Thread.sleep(2000);
-                addStep(automationSteps, "Table found on page");
+                runLog.run("table wait", RunLog.attrs("xpathKey", "table.main"), () -> {
+                    runLog.note("Waiting for table to load...");
+                    waits.locate("table", "table.main", ELEMENT_TIMEOUT, false);
+                    waits.networkIdle(NETWORK_IDLE, SETTLE_TIMEOUT);
+                    runLog.note("Table found on page");
+                });
             } catch (Exception e) {
-                addStep(automationSteps, "Warning: Table not found, but continuing...");
+                runLog.note("Warning: Table not found, but continuing...");
             }
 
-            captureScreenshot(driver, screenshots, "Internships page loaded", config.getAuthSessionId());
+            NetworkPolicy.PageStats internshipStats = networkPolicy.measure(browser);
+            if (internshipStats != null) {
+                runLog.note("Network (internships): " + internshipStats);
+                networkRequests += internshipStats.getRequests();
+                networkBytes += internshipStats.getTransferBytes();
+            }
+            runLog.note("Network total: " + networkRequests + " requests, "
+                    + (networkBytes / 1024) + " KB transferred");
+            runLog.note("Asset cache: " + assetStats, RunLog.attrs(
+                    "hits", String.valueOf(assetStats.getHits()),
+                    "misses", String.valueOf(assetStats.getMisses()),
+                    "bytesSaved", String.valueOf(assetStats.getBytesSaved())));
+
+            screenshots.step(browser, "Internships page loaded");
 
-            addStep(automationSteps, "Looking for pending worklog button using XPath...");
+            runLog.note("Looking for pending worklog button using XPath...");
 
             try {
-                List<WebElement> tableRows = driver.findElements(
+                List<WebElement> tableRows = browser.findElements(
                     By.xpath(XPathLoader.get("table.rows")));
-                addStep(automationSteps, "Found " + tableRows.size() + " row(s) in table");
+                runLog.note("Found " + tableRows.size() + " row(s) in table", RunLog.attrs("xpathKey", "table.rows"));
 
                 if (tableRows.isEmpty()) {
-                    addStep(automationSteps, "No rows found in table - possibly no pending worklogs");
-                    return "SUCCESS: No pending worklogs found to submit.";
+                    runLog.note("No rows found in table - possibly no pending worklogs");
+                    return RunResult.success(NOTHING_PENDING_MESSAGE, runLog.messages());
                 }
             } catch (Exception e) {
-                addStep(automationSteps, "Warning: Could not check table rows - " + e.getMessage());
+                runLog.note("Warning: Could not check table rows - " + e.getMessage());
             }
 
-            WebElement completeButton = findCompleteButton(wait, automationSteps);
+            runLog.run("open form", () -> {
+                WebElement completeButton = findCompleteButton(waits, runLog);
 
-            addStep(automationSteps, "Clicking Complete button...");
-            js.executeScript("arguments[0].scrollIntoView({block: 'center'});", completeButton);
-            Thread.sleep(500);
-            js.executeScript("arguments[0].click();", completeButton);
-            Thread.sleep(3000);
-
-            addStep(automationSteps, "Waiting for worklog form to appear...");
-            try {
-                wait.until(ExpectedConditions.presenceOfElementLocated(
-                        By.xpath(XPathLoader.get("form.heading.worklog"))));
-                Thread.sleep(2000);
-                addStep(automationSteps, "Worklog form heading found");
-            } catch (Exception e) {
-                addStep(automationSteps, "Warning: Worklog heading not found, checking for form elements...");
-                wait.until(ExpectedConditions.presenceOfElementLocated(
-                    By.xpath(XPathLoader.get("form.main"))));
-                Thread.sleep(2000);
-                addStep(automationSteps, "Form detected");
-            }
-            captureScreenshot(driver, screenshots, "Worklog form opened", config.getAuthSessionId());
-
-            addStep(automationSteps, "Filling out the form using XPath locators...");
-            fillFormWithXPaths(wait, js, config, automationSteps);
-            Thread.sleep(1000);
-            captureScreenshot(driver, screenshots, "Form filled", config.getAuthSessionId());
-
-            addStep(automationSteps, "Submitting the form...");
-            WebElement submitButton = wait.until(ExpectedConditions.elementToBeClickable(
-                    By.xpath(XPathLoader.get("button.submit"))));
-            js.executeScript("arguments[0].scrollIntoView({block: 'center'});", submitButton);
-            Thread.sleep(500);
-            js.executeScript("arguments[0].click();", submitButton);
-            Thread.sleep(3000);
-
-            addStep(automationSteps, "Worklog submitted successfully!");
-            captureScreenshot(driver, screenshots, "Final confirmation", config.getAuthSessionId());
-            logger.info("Worklog submitted successfully");
-            return buildSuccessResponse(automationSteps, screenshots);
+                runLog.note("Clicking Complete button...");
+                js.executeScript("arguments[0].scrollIntoView({block: 'center'});", completeButton);
+                js.executeScript("arguments[0].click();", completeButton);
 
-        } catch (Exception e) {
-            addStep(automationSteps, "ERROR: " + e.getMessage());
-            logger.error("Error: " + e.getMessage(), e);
-            if (driver != null) {
-                try {
-                    String authId = (config != null) ? config.getAuthSessionId() : null;
-                    captureScreenshot(driver, screenshots, "Error state", authId);
-                } catch (Exception screenshotError) {
-                    logger.warn("Failed to capture error screenshot: " + screenshotError.getMessage());
-                }
-            }
-            return buildErrorResponse(automationSteps, screenshots, e.getMessage());
-        } finally {
-            if (driver != null) {
+                runLog.note("Waiting for worklog form to appear...");
                 try {
-                    driver.quit();
-                    logger.info("Browser closed");
+                    waits.locate("worklog form heading", "form.heading.worklog", ELEMENT_TIMEOUT, false);
+                    runLog.note("Worklog form heading found", RunLog.attrs("xpathKey", "form.heading.worklog"));
                 } catch (Exception e) {
-                    logger.error("Error closing driver: " + e.getMessage());
+                    runLog.note("Warning: Worklog heading not found, checking for form elements...");
+                    waits.locate("worklog form", "form.main", ELEMENT_TIMEOUT, false);
+                    runLog.note("Form detected", RunLog.attrs("xpathKey", "form.main"));
                 }
-            }
+                waits.domSettled(SETTLE_QUIET, SETTLE_TIMEOUT);
+            });
+            screenshots.step(browser, "Worklog form opened");
+
+            runLog.note("Filling out the form using XPath locators...");
+            fillFormWithXPaths(waits, js, config, runLog);
+            waits.domSettled(SETTLE_QUIET, SETTLE_TIMEOUT);
+            screenshots.step(browser, "Form filled");
+
+            runLog.run("submit", RunLog.attrs("xpathKey", "button.submit"), () -> {
+                runLog.note("Submitting the form...");
+                WebElement submitButton = waits.locate("submit button", "button.submit", ELEMENT_TIMEOUT, true);
+                js.executeScript("arguments[0].scrollIntoView({block: 'center'});", submitButton);
+                js.executeScript("arguments[0].click();", submitButton);
+                waits.tryUntil("form to close", SUBMIT_TIMEOUT, ExpectedConditions.stalenessOf(submitButton));
+                waits.networkIdle(NETWORK_IDLE, SETTLE_TIMEOUT);
+            });
 
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException ie) {
+            runLog.note("Worklog submitted successfully!");
+            runLog.note("Total time spent waiting: " + waits.getTotalWaitMillis() + " ms");
+            screenshots.step(browser, "Final confirmation");
+            logger.info("Worklog submitted successfully");
+            status = RunResult.Status.SUCCESS;
+            message = SUBMITTED_MESSAGE;
+
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
                 Thread.currentThread().interrupt();
             }
-
-            killAllChromeProcesses();
-
-            try {
-                Runtime.getRuntime().exec(new String[]{"sh", "-c", "rm -rf /tmp/.org.chromium.Chromium.* /tmp/chrome* /tmp/scoped_dir* 2>/dev/null || true"});
-                logger.info("Cleaned up Chrome temporary files");
-            } catch (Exception cleanupError) {
-                logger.warn("Could not clean up temp files: " + cleanupError.getMessage());
+            runLog.note("ERROR: " + e.getMessage());
+            logger.error("Error: " + e.getMessage(), e);
+            if (driver != null) {
+                screenshots.error(driver, "Error state");
             }
-
-            System.gc();
-            automationSteps.clear();
-            screenshots.clear();
-
-            try {
-                Thread.sleep(2000);
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
+            boolean expired = e instanceof SessionExpiredException;
+            status = RunResult.Status.ERROR;
+            message = expired ? SESSION_EXPIRED_MESSAGE : "ERROR: " + e.getMessage();
+            failureKind = expired ? RunResult.FailureKind.TERMINAL : RunResult.FailureKind.RETRYABLE;
+        } finally {
+            if (assetStats != null) {
+                assetStats.close();
             }
+            chromeDriverPool.release(session);
         }
-    }
 
-    private ChromeOptions createOptimizedChromeOptions() {
-        ChromeOptions options = new ChromeOptions();
-
-        if (chromeHeadless) {
-            options.addArguments("--headless=new");
-            logger.info("Running Chrome in headless mode");
-
-            options.addArguments(
-                    "--no-sandbox",
-                    "--disable-setuid-sandbox",
-                    "--disable-dev-shm-usage",
-                    "--window-size=1024,768",
-                    "--js-flags=--max-old-space-size=128",
-                    "--single-process",
-                    "--disable-gpu",
-                    "--disable-software-rasterizer",
-                    "--disable-site-isolation-trials",
-                    "--disable-ipc-flooding-protection",
-                    "--memory-pressure-off",
-                    "--disable-breakpad",
-                    "--disable-features=VizDisplayCompositor,TranslateUI,BlinkGenPropertyTrees",
-                    "--renderer-process-limit=1",
-                    "--disable-partial-raster",
-                    "--disable-skia-runtime-opts",
-                    "--disable-logging",
-                    "--disable-infobars",
-                    "--disable-notifications",
-                    "--disable-popup-blocking",
-                    "--disable-save-password-bubble",
-                    "--disable-translate",
-                    "--no-default-browser-check",
-                    "--aggressive-cache-discard",
-                    "--disable-cache",
-                    "--disable-application-cache",
-                    "--disk-cache-size=1"
-            );
-        } else {
-            logger.info("Running Chrome in visible mode (for local debugging)");
-            options.addArguments("--window-size=1280,720");
-        }
-
-        options.addArguments(
-                "--disable-blink-features=AutomationControlled",
-                "--disable-extensions",
-                "--disable-background-networking",
-                "--disable-default-apps",
-                "--disable-sync",
-                "--no-first-run",
-                "--disable-crash-reporter",
-                "--ignore-certificate-errors",
-                "--remote-allow-origins=*",
-                "--disable-plugins",
-                "--disable-background-timer-throttling",
-                "--disable-backgrounding-occluded-windows",
-                "--disable-renderer-backgrounding",
-                "--disable-client-side-phishing-detection",
-                "--disable-hang-monitor",
-                "--disable-prompt-on-repost",
-                "--disable-domain-reliability",
-                "--disable-component-update"
-        );
-
-        options.setPageLoadStrategy(PageLoadStrategy.EAGER);
-        options.setAcceptInsecureCerts(true);
-
-        return options;
+        // Built after the finally so the browser is back in the pool while encodes finish
+        return new RunResult(status, message, runLog.messages(), screenshots.collect(SCREENSHOT_COLLECT_TIMEOUT_MILLIS))
+                .withFailureKind(failureKind);
     }
 
-    private void navigateWithRetry(WebDriver driver, JavascriptExecutor js, String url, List<String> automationSteps) throws InterruptedException {
+    private void navigateWithRetry(WebDriver driver, JavascriptExecutor js, String url, RunLog runLog) throws InterruptedException {
         int retryCount = 0;
         Exception lastException = null;
 
         while (retryCount < MAX_NAVIGATION_RETRIES) {
+            Map<String, String> attempt = RunLog.attrs("url", url, "attempt", String.valueOf(retryCount + 1));
             try {
-                addStep(automationSteps, "Navigation attempt " + (retryCount + 1) + "/" + MAX_NAVIGATION_RETRIES + " to " + url);
-
-                System.gc();
+                runLog.note("Navigation attempt " + (retryCount + 1) + "/" + MAX_NAVIGATION_RETRIES + " to " + url, attempt);
 
                 driver.get(url);
 
@@ -298,13 +345,13 @@ public class WorklogService {
                     return "interactive".equals(readyState) || "complete".equals(readyState);
                 });
 
-                addStep(automationSteps, "Navigation successful on attempt " + (retryCount + 1));
+                runLog.note("Navigation successful on attempt " + (retryCount + 1), attempt);
                 return;
 
             } catch (Exception e) {
                 lastException = e;
                 retryCount++;
-                addStep(automationSteps, "Navigation attempt " + retryCount + " failed: " + e.getMessage());
+                runLog.note("Navigation attempt " + retryCount + " failed: " + e.getMessage(), attempt);
 
                 if (retryCount < MAX_NAVIGATION_RETRIES) {
                     try {
@@ -313,10 +360,8 @@ public class WorklogService {
                         logger.warn("Could not stop page load: " + stopEx.getMessage());
                     }
 
-                    addStep(automationSteps, "Waiting 10 seconds before retry...");
+                    runLog.note("Waiting 10 seconds before retry...");
                     Thread.sleep(10000);
-
-                    System.gc();
                 }
             }
         }
@@ -324,89 +369,26 @@ public class WorklogService {
         throw new RuntimeException("Failed to navigate to " + url + " after " + MAX_NAVIGATION_RETRIES + " attempts", lastException);
     }
 
-    private WebElement findCompleteButton(WebDriverWait wait, List<String> automationSteps) {
+    private WebElement findCompleteButton(WaitEngine waits, RunLog runLog) {
         try {
-            WebElement button = wait.until(ExpectedConditions.elementToBeClickable(
-                    By.xpath(XPathLoader.get("table.complete.button.primary"))));
-            addStep(automationSteps, "Found Complete button using primary XPath");
+            WebElement button = waits.locate("Complete button", "table.complete.button.primary", ELEMENT_TIMEOUT, true);
+            runLog.note("Found Complete button", RunLog.attrs("xpathKey", "table.complete.button.primary"));
             return button;
         } catch (Exception e) {
-            addStep(automationSteps, "Complete button not found: " + e.getMessage());
+            runLog.note("Complete button not found: " + e.getMessage());
             throw new RuntimeException("Could not find Complete button");
         }
     }
 
-    @SuppressWarnings("UseSpecificCatch")
-    private void killAllChromeProcesses() {
-        try {
-            Process p1 = Runtime.getRuntime().exec(new String[]{"sh", "-c", "pkill -9 -f 'chrome|chromedriver' || true"});
-            p1.waitFor(3, java.util.concurrent.TimeUnit.SECONDS);
-            Thread.sleep(500);
-            logger.info("Killed all Chrome processes");
-        } catch (Exception e) {
-            logger.warn("Error killing Chrome processes: " + e.getMessage());
-        }
-    }
-
-    private void addStep(List<String> steps, String step) {
-        steps.add(step);
-        logger.info(step);
+    private RunResult finish(RunLog runLog, RunResult result) {
+        result.withDuration(runLog.elapsedMillis()).withEvents(runLog.getRunId(), runLog.getEvents());
+        runHistory.record(runLog.getUser(), runLog.getEngine(), runLog.getStartedAt(), result);
+        return result;
     }
 
-    @SuppressWarnings("UseSpecificCatch")
-    private void captureScreenshot(WebDriver driver, List<Screenshot> screenshots, String description, String authSessionId) {
-        try {
-            byte[] screenshotBytes = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
-            String base64Screenshot = Base64.getEncoder().encodeToString(screenshotBytes);
-            screenshots.add(new Screenshot(description, base64Screenshot));
-            logger.info("Screenshot captured: " + description);
-
-            if (authSessionId != null && supabaseStorage != null) {
-                try {
-                    supabaseStorage.saveScreenshot(authSessionId, description, screenshotBytes);
-                } catch (Exception dbError) {
-                    logger.warn("Failed to save screenshot to database: " + dbError.getMessage());
-                }
-            }
-        } catch (Exception e) {
-            logger.warn("Failed to capture screenshot '" + description + "': " + e.getMessage());
-        }
-    }
-
-    private String buildSuccessResponse(List<String> automationSteps, List<Screenshot> screenshots) {
-        StringBuilder response = new StringBuilder("SUCCESS: Worklog submitted!\n\n");
-        response.append("STEPS:\n");
-        for (String step : automationSteps) {
-            response.append(step).append("\n");
-        }
-
-        if (!screenshots.isEmpty()) {
-            response.append("\nSCREENSHOTS:\n");
-            for (int i = 0; i < screenshots.size(); i++) {
-                Screenshot ss = screenshots.get(i);
-                response.append(String.format("[SCREENSHOT_%d]%s|%s\n",
-                    i, ss.description, ss.base64Data));
-            }
-        }
-        return response.toString();
-    }
-
-    private String buildErrorResponse(List<String> automationSteps, List<Screenshot> screenshots, String error) {
-        StringBuilder response = new StringBuilder("ERROR: ").append(error).append("\n\n");
-        response.append("STEPS:\n");
-        for (String step : automationSteps) {
-            response.append(step).append("\n");
-        }
-
-        if (!screenshots.isEmpty()) {
-            response.append("\nSCREENSHOTS:\n");
-            for (int i = 0; i < screenshots.size(); i++) {
-                Screenshot ss = screenshots.get(i);
-                response.append(String.format("[SCREENSHOT_%d]%s|%s\n",
-                    i, ss.description, ss.base64Data));
-            }
-        }
-        return response.toString();
+    private String describeUser(AuthConfig config) {
+        String id = config.getAuthSessionId();
+        return id.length() > 8 ? "..." + id.substring(id.length() - 8) : id;
     }
 
     private void injectCookies(WebDriver driver, AuthConfig config) {
@@ -433,48 +415,46 @@ public class WorklogService {
             logger.warn("Could not clear browser storage: {}", e.getMessage());
         }
 
-        String authSessionId = config.getAuthSessionId();
-        String keycloakIdentity = config.getKeycloakIdentity();
-        String keycloakSession = config.getKeycloakSession();
-
-        if (authSessionId != null && authSessionId.contains(".")) {
-            String[] parts = authSessionId.split("\\.", 2);
-            authSessionId = parts[0];
+        Map<String, String> cookies = SessionCookies.from(config);
+        String authSessionId = cookies.get("AUTH_SESSION_ID");
+        if (authSessionId != null && !authSessionId.equals(config.getAuthSessionId())) {
             logger.info("Sanitized AUTH_SESSION_ID from {} to {}", config.getAuthSessionId(), authSessionId);
         }
 
-        if (keycloakIdentity != null && keycloakIdentity.contains(".") && keycloakIdentity.split("\\.").length > 5) {
-            String[] parts = keycloakIdentity.split("\\.", 2);
-            keycloakIdentity = parts[0];
-        }
-
-        if (keycloakSession != null && keycloakSession.contains(".") && keycloakSession.split("\\.").length > 5) {
-            String[] parts = keycloakSession.split("\\.", 2);
-            keycloakSession = parts[0];
-        }
-
         logger.info("Injecting cookies for session: {}...",
             authSessionId != null && authSessionId.length() > 20 ? authSessionId.substring(0, 20) : authSessionId);
 
-        addCookieWithRetry(driver, "AUTH_SESSION_ID", authSessionId);
-        addCookieWithRetry(driver, "AUTH_SESSION_ID_LEGACY", authSessionId);
-        addCookieWithRetry(driver, "KEYCLOAK_IDENTITY", keycloakIdentity);
-        addCookieWithRetry(driver, "KEYCLOAK_IDENTITY_LEGACY", keycloakIdentity);
-        addCookieWithRetry(driver, "KEYCLOAK_SESSION", keycloakSession);
-        addCookieWithRetry(driver, "KEYCLOAK_SESSION_LEGACY", keycloakSession);
+        for (Map.Entry<String, String> cookie : cookies.entrySet()) {
+            addCookieWithRetry(driver, cookie.getKey(), cookie.getValue());
+        }
 
         int cookiesSet = driver.manage().getCookies().size();
         logger.info("Cookies injected successfully ({} cookies total)", cookiesSet);
     }
 
+    /**
+     * Cookie scoped to the portal host and its subdomains. Hosts without a dot (localhost
+     * fixtures) get a host-only cookie, and https decides the secure flag.
+     */
+    private Cookie portalCookie(String name, String value) {
+        URI base = URI.create(portalClient.getBaseUrl());
+        String host = base.getHost();
+        Cookie.Builder builder = new Cookie.Builder(name, value)
+                .path("/")
+                .isSecure("https".equalsIgnoreCase(base.getScheme()));
+        if (host != null && host.contains(".") && !host.matches("[0-9.]+")) {
+            builder.domain("." + host);
+        }
+        return builder.build();
+    }
+
     private void addCookieWithRetry(WebDriver driver, String name, String value) {
         int maxRetries = 3;
         int retryCount = 0;
 
         while (retryCount < maxRetries) {
             try {
-                driver.manage().addCookie(new Cookie.Builder(name, value)
-                    .domain(".kalvium.community").path("/").isSecure(true).build());
+                driver.manage().addCookie(portalCookie(name, value));
                 logger.debug("Cookie {} added successfully", name);
                 return;
             } catch (Exception e) {
@@ -497,80 +477,93 @@ public class WorklogService {
     }
 
     @SuppressWarnings("UseSpecificCatch")
-    private void fillFormWithXPaths(WebDriverWait wait, JavascriptExecutor js,
-                                    AuthConfig config, List<String> automationSteps) throws InterruptedException {
+    private void fillFormWithXPaths(WaitEngine waits, JavascriptExecutor js,
+                                    AuthConfig config, RunLog runLog) throws Exception {
+        String tasksContent = config.getTasksCompleted() != null ? config.getTasksCompleted() : "Need to complete the tasks assigned..";
+        String challengesContent = config.getChallenges() != null ? config.getChallenges() : "NA";
+        String blockersContent = config.getBlockers() != null ? config.getBlockers() : "NA";
 
-        addStep(automationSteps, "Looking for work status dropdown using XPaths...");
+        if ("bundled".equalsIgnoreCase(formFillMode)) {
+            try {
+                boolean filled = runLog.call("bundled fill",
+                        () -> formFillScript.fill(js, tasksContent, challengesContent, blockersContent, runLog));
+                if (filled) {
+                    runLog.note("Form filled successfully in one script call");
+                    return;
+                }
+                runLog.note("Bundled fill incomplete, falling back to step-by-step fill");
+            } catch (Exception e) {
+                runLog.note("Bundled fill failed, falling back to step-by-step fill: " + e.getMessage());
+            }
+        }
 
-        boolean dropdownSelected = selectDropdown(wait, js, automationSteps);
+        boolean dropdownSelected = runLog.call("dropdown", () -> {
+            runLog.note("Looking for work status dropdown using XPaths...");
+            return selectDropdown(waits, js, runLog);
+        });
 
         if (!dropdownSelected) {
-            addStep(automationSteps, "WARNING: Dropdown selection failed - editor may not appear!");
+            runLog.note("WARNING: Dropdown selection failed - editor may not appear!");
         } else {
-            addStep(automationSteps, "Dropdown successfully selected, waiting for editor to load...");
+            runLog.note("Dropdown successfully selected, waiting for editor to load...");
         }
 
-        Thread.sleep(3000);
-
-        String tasksContent = config.getTasksCompleted() != null ? config.getTasksCompleted() : "Need to complete the tasks assigned..";
-        String challengesContent = config.getChallenges() != null ? config.getChallenges() : "NA";
-        String blockersContent = config.getBlockers() != null ? config.getBlockers() : "NA";
+        if (waits.tryLocate("editor mounted", "tasks.first.item", ELEMENT_TIMEOUT, false) == null) {
+            runLog.note("WARNING: Editor did not appear after dropdown change");
+        }
 
-        addStep(automationSteps, "Updating Tasks section...");
-        updateFieldByXPath(wait, js, XPathLoader.get("tasks.first.item"), tasksContent, automationSteps);
-        Thread.sleep(500);
+        runLog.note("Updating Tasks section...");
+        updateField(waits, js, "tasks", "tasks.first.item", tasksContent, runLog);
 
-        addStep(automationSteps, "Removing 'Add more tasks' item...");
-        removeElementByXPath(js, XPathLoader.get("tasks.add.more"), automationSteps);
-        Thread.sleep(500);
+        runLog.note("Removing 'Add more tasks' item...");
+        removeElement(js, "tasks.add.more", runLog);
 
-        addStep(automationSteps, "Updating Challenges section...");
-        updateFieldByXPath(wait, js, XPathLoader.get("challenges.first.item"), challengesContent, automationSteps);
-        Thread.sleep(500);
+        runLog.note("Updating Challenges section...");
+        updateField(waits, js, "challenges", "challenges.first.item", challengesContent, runLog);
 
-        addStep(automationSteps, "Removing 'Add any obstacles' item...");
-        removeElementByXPath(js, XPathLoader.get("challenges.add.more"), automationSteps);
-        Thread.sleep(500);
+        runLog.note("Removing 'Add any obstacles' item...");
+        removeElement(js, "challenges.add.more", runLog);
 
-        addStep(automationSteps, "Updating Blockers section...");
-        updateFieldByXPath(wait, js, XPathLoader.get("blockers.first.item"), blockersContent, automationSteps);
-        Thread.sleep(500);
+        runLog.note("Updating Blockers section...");
+        updateField(waits, js, "blockers", "blockers.first.item", blockersContent, runLog);
 
-        addStep(automationSteps, "Removing 'Add any blockers faced' item...");
-        removeElementByXPath(js, XPathLoader.get("blockers.add.more"), automationSteps);
-        Thread.sleep(500);
+        runLog.note("Removing 'Add any blockers faced' item...");
+        removeElement(js, "blockers.add.more", runLog);
 
-        addStep(automationSteps, "Form filled successfully");
+        runLog.note("Form filled successfully");
     }
 
-    private void updateFieldByXPath(WebDriverWait wait, JavascriptExecutor js, String xpath, String newText, List<String> automationSteps) {
+    private void updateField(WaitEngine waits, JavascriptExecutor js, String field, String xpathKey,
+                             String newText, RunLog runLog) {
         try {
-            WebElement element = wait.until(ExpectedConditions.presenceOfElementLocated(By.xpath(xpath)));
-            js.executeScript("arguments[0].scrollIntoView({block: 'center'});", element);
-            Thread.sleep(300);
-
-            js.executeScript(
-                "var el = arguments[0];" +
-                "el.click();" +
-                "el.focus();" +
-                "var range = document.createRange();" +
-                "range.selectNodeContents(el);" +
-                "var sel = window.getSelection();" +
-                "sel.removeAllRanges();" +
-                "sel.addRange(range);" +
-                "document.execCommand('delete', false, null);" +
-                "document.execCommand('insertText', false, arguments[1]);" +
-                "el.dispatchEvent(new InputEvent('input', { bubbles: true, inputType: 'insertText', data: arguments[1] }));" +
-                "el.dispatchEvent(new Event('change', { bubbles: true }));",
-                element, newText);
-
-            addStep(automationSteps, "Updated element at: " + xpath);
+            runLog.run("editor fill", RunLog.attrs("field", field, "xpathKey", xpathKey), () -> {
+                WebElement element = waits.locate("field " + field, xpathKey, ELEMENT_TIMEOUT, false);
+                js.executeScript("arguments[0].scrollIntoView({block: 'center'});", element);
+
+                js.executeScript(
+                    "var el = arguments[0];" +
+                    "el.click();" +
+                    "el.focus();" +
+                    "var range = document.createRange();" +
+                    "range.selectNodeContents(el);" +
+                    "var sel = window.getSelection();" +
+                    "sel.removeAllRanges();" +
+                    "sel.addRange(range);" +
+                    "document.execCommand('delete', false, null);" +
+                    "document.execCommand('insertText', false, arguments[1]);" +
+                    "el.dispatchEvent(new InputEvent('input', { bubbles: true, inputType: 'insertText', data: arguments[1] }));" +
+                    "el.dispatchEvent(new Event('change', { bubbles: true }));",
+                    element, newText);
+
+                runLog.note("Updated " + field + " field");
+            });
         } catch (Exception e) {
-            addStep(automationSteps, "WARNING: Could not update element at " + xpath + ": " + e.getMessage());
+            runLog.note("WARNING: Could not update " + field + " field (" + xpathKey + "): " + e.getMessage());
         }
     }
 
-    private void removeElementByXPath(JavascriptExecutor js, String xpath, List<String> automationSteps) {
+    private void removeElement(JavascriptExecutor js, String xpathKey, RunLog runLog) {
+        String xpath = XPathLoader.get(xpathKey);
         try {
             js.executeScript(
                 "var el = document.evaluate(arguments[0], document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue;" +
@@ -580,68 +573,48 @@ public class WorklogService {
                 "}" +
                 "return false;",
                 xpath);
-            addStep(automationSteps, "Removed element at: " + xpath);
+            runLog.note("Removed element at: " + xpath, RunLog.attrs("xpathKey", xpathKey));
         } catch (Exception e) {
-            addStep(automationSteps, "WARNING: Could not remove element at " + xpath + ": " + e.getMessage());
+            runLog.note("WARNING: Could not remove element at " + xpath + ": " + e.getMessage(),
+                    RunLog.attrs("xpathKey", xpathKey));
         }
     }
 
-    private boolean selectDropdown(WebDriverWait wait, JavascriptExecutor js, List<String> automationSteps) throws InterruptedException {
+    private boolean selectDropdown(WaitEngine waits, JavascriptExecutor js, RunLog runLog) {
         try {
-            WebElement selectElement = wait.until(ExpectedConditions.presenceOfElementLocated(
-                    By.xpath(XPathLoader.get("dropdown.select.main"))));
-            addStep(automationSteps, "Found select element using dropdown.select.main XPath");
+            WebElement selectElement = waits.locate("dropdown select", "dropdown.select.main", ELEMENT_TIMEOUT, false);
+            runLog.note("Found select element using dropdown.select.main");
 
             js.executeScript("arguments[0].scrollIntoView({block: 'center'});", selectElement);
-            Thread.sleep(500);
+            js.executeScript(SELECT_FIRST_OPTION_SCRIPT, selectElement);
 
-            js.executeScript(
-                "var select = arguments[0];" +
-                "select.selectedIndex = 0;" +
-                "select.dispatchEvent(new Event('change', { bubbles: true }));" +
-                "select.dispatchEvent(new Event('input', { bubbles: true }));",
-                selectElement);
-
-            addStep(automationSteps, "Selected option[0] from dropdown using XPath");
-            Thread.sleep(2000);
+            runLog.note("Selected option[0] from dropdown using XPath");
             return true;
         } catch (Exception e1) {
-            addStep(automationSteps, "Select element not found, trying button approach: " + e1.getMessage());
+            runLog.note("Select element not found, trying button approach: " + e1.getMessage());
 
             try {
-                WebElement dropdownButton = wait.until(ExpectedConditions.elementToBeClickable(
-                        By.xpath(XPathLoader.get("dropdown.button.main"))));
-                addStep(automationSteps, "Found dropdown button using dropdown.button.main XPath");
+                WebElement dropdownButton = waits.locate("dropdown button", "dropdown.button.main", ELEMENT_TIMEOUT, true);
+                runLog.note("Found dropdown button using dropdown.button.main");
 
                 js.executeScript("arguments[0].scrollIntoView({block: 'center'});", dropdownButton);
-                Thread.sleep(500);
-
                 js.executeScript("arguments[0].click();", dropdownButton);
-                addStep(automationSteps, "Clicked dropdown button");
-                Thread.sleep(1000);
+                runLog.note("Clicked dropdown button");
 
                 try {
-                    WebElement selectElement = wait.until(ExpectedConditions.presenceOfElementLocated(
-                            By.xpath(XPathLoader.get("dropdown.select.main"))));
-                    js.executeScript(
-                        "var select = arguments[0];" +
-                        "select.selectedIndex = 0;" +
-                        "select.dispatchEvent(new Event('change', { bubbles: true }));" +
-                        "select.dispatchEvent(new Event('input', { bubbles: true }));",
-                        selectElement);
-                    addStep(automationSteps, "Selected option after clicking button");
-                    Thread.sleep(2000);
+                    WebElement selectElement = waits.locate("dropdown select after click", "dropdown.select.main",
+                            ELEMENT_TIMEOUT, false);
+                    js.executeScript(SELECT_FIRST_OPTION_SCRIPT, selectElement);
+                    runLog.note("Selected option after clicking button");
                     return true;
                 } catch (Exception e) {
-                    WebElement option = wait.until(ExpectedConditions.elementToBeClickable(
-                            By.xpath(XPathLoader.get("dropdown.option.first"))));
+                    WebElement option = waits.locate("dropdown option", "dropdown.option.first", ELEMENT_TIMEOUT, true);
                     js.executeScript("arguments[0].selected = true; arguments[0].parentElement.dispatchEvent(new Event('change', { bubbles: true }));", option);
-                    addStep(automationSteps, "Clicked option directly using dropdown.option.first XPath");
-                    Thread.sleep(2000);
+                    runLog.note("Clicked option directly using dropdown.option.first");
                     return true;
                 }
             } catch (Exception e2) {
-                addStep(automationSteps, "All dropdown XPath strategies failed: " + e2.getMessage());
+                runLog.note("All dropdown XPath strategies failed: " + e2.getMessage());
                 return false;
             }
         }
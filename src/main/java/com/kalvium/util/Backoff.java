@@ -0,0 +1,22 @@
+package com.kalvium.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+public final class Backoff {
+
+    private Backoff() {}
+
+    /**
+     * Exponential backoff with equal jitter: half the delay is fixed, half is random.
+     * Shared by the work queue and the notification outbox.
+     * @param baseSeconds Delay before the first retry
+     * @param maxSeconds Upper bound on the delay
+     * @param attempt Attempts made so far, starting at 1
+     * @return Seconds to wait before the next attempt
+     */
+    public static long equalJitterSeconds(long baseSeconds, long maxSeconds, int attempt) {
+        long exponential = baseSeconds << Math.min(Math.max(0, attempt - 1), 20);
+        long delay = Math.min(maxSeconds, exponential);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+}
@@ -0,0 +1,159 @@
+package com.kalvium.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.kalvium.model.StepEvent;
+
+/**
+ * Structured event log of a single automation run. Timed steps wrap a block of
+ * work and record its duration and outcome; notes are point-in-time messages
+ * attributed to the step that is currently open.
+ */
+public class RunLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(RunLog.class);
+
+    @FunctionalInterface
+    public interface StepBody<T> {
+        T call() throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface StepAction {
+        void run() throws Exception;
+    }
+
+    private final String runId;
+    private final String user;
+    private final String engine;
+    private final long startedAt;
+    private final List<StepEvent> events = new CopyOnWriteArrayList<>();
+    private final Deque<String> openSteps = new ArrayDeque<>();
+    private final List<Consumer<StepEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    public RunLog(String user, String engine) {
+        this.runId = UUID.randomUUID().toString();
+        this.user = user;
+        this.engine = engine;
+        this.startedAt = System.currentTimeMillis();
+    }
+
+    public String getRunId() { return runId; }
+    public String getUser() { return user; }
+    public String getEngine() { return engine; }
+    public long getStartedAt() { return startedAt; }
+
+    /**
+     * Register a callback invoked on the run's thread for every event as it is recorded.
+     */
+    public void addListener(Consumer<StepEvent> listener) {
+        if (listener != null) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * Run a block as a timed step. Exceptions are recorded as a failed step and rethrown.
+     */
+    public <T> T call(String name, Map<String, String> attributes, StepBody<T> body) throws Exception {
+        long start = System.currentTimeMillis();
+        openSteps.push(name);
+        try {
+            T result = body.call();
+            long duration = System.currentTimeMillis() - start;
+            append(new StepEvent(name, "Step '" + name + "' completed in " + duration + " ms", start, duration,
+                    StepEvent.Outcome.OK, attributes));
+            return result;
+        } catch (Exception e) {
+            long duration = System.currentTimeMillis() - start;
+            append(new StepEvent(name, "Step '" + name + "' failed after " + duration + " ms: " + e.getMessage(),
+                    start, duration, StepEvent.Outcome.FAILED, attributes));
+            throw e;
+        } finally {
+            openSteps.pop();
+        }
+    }
+
+    public <T> T call(String name, StepBody<T> body) throws Exception {
+        return call(name, null, body);
+    }
+
+    public void run(String name, Map<String, String> attributes, StepAction action) throws Exception {
+        call(name, attributes, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public void run(String name, StepAction action) throws Exception {
+        run(name, null, action);
+    }
+
+    /**
+     * Record a step that was timed elsewhere, e.g. a wait.
+     */
+    public void record(String name, long start, long durationMillis, StepEvent.Outcome outcome,
+                       String message, Map<String, String> attributes) {
+        append(new StepEvent(name, message, start, durationMillis, outcome, attributes));
+    }
+
+    public void note(String message) {
+        note(message, null);
+    }
+
+    public void note(String message, Map<String, String> attributes) {
+        String current = openSteps.isEmpty() ? "run" : openSteps.peek();
+        append(new StepEvent(current, message, System.currentTimeMillis(), 0, StepEvent.Outcome.INFO, attributes));
+    }
+
+    public List<StepEvent> getEvents() {
+        return Collections.unmodifiableList(events);
+    }
+
+    /**
+     * Human-readable step messages in the order they happened.
+     */
+    public List<String> messages() {
+        List<String> messages = new ArrayList<>(events.size());
+        for (StepEvent event : events) {
+            messages.add(event.getMessage());
+        }
+        return messages;
+    }
+
+    public long elapsedMillis() {
+        return System.currentTimeMillis() - startedAt;
+    }
+
+    public static Map<String, String> attrs(String... keyValues) {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < keyValues.length; i += 2) {
+            attributes.put(keyValues[i], keyValues[i + 1]);
+        }
+        return attributes;
+    }
+
+    private void append(StepEvent event) {
+        events.add(event);
+        logger.info(event.getMessage());
+        for (Consumer<StepEvent> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                logger.debug("Run log listener failed: {}", e.getMessage());
+            }
+        }
+    }
+}
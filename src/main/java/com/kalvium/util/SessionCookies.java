@@ -0,0 +1,67 @@
+package com.kalvium.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.kalvium.model.AuthConfig;
+
+public final class SessionCookies {
+
+    private SessionCookies() {}
+
+    /**
+     * Build the Keycloak cookie set for a user, in the order the portal expects.
+     * Values pasted from the browser sometimes carry a trailing signature segment,
+     * which is stripped the same way for both the browser and HTTP engines.
+     * @param config The user configuration
+     * @return Cookie name to value, without null values
+     */
+    public static Map<String, String> from(AuthConfig config) {
+        String authSessionId = sanitizeAuthSessionId(config.getAuthSessionId());
+        String keycloakIdentity = sanitizeToken(config.getKeycloakIdentity());
+        String keycloakSession = sanitizeToken(config.getKeycloakSession());
+
+        Map<String, String> cookies = new LinkedHashMap<>();
+        put(cookies, "AUTH_SESSION_ID", authSessionId);
+        put(cookies, "AUTH_SESSION_ID_LEGACY", authSessionId);
+        put(cookies, "KEYCLOAK_IDENTITY", keycloakIdentity);
+        put(cookies, "KEYCLOAK_IDENTITY_LEGACY", keycloakIdentity);
+        put(cookies, "KEYCLOAK_SESSION", keycloakSession);
+        put(cookies, "KEYCLOAK_SESSION_LEGACY", keycloakSession);
+        return cookies;
+    }
+
+    /**
+     * Render the cookie set as a Cookie request header value.
+     */
+    public static String header(AuthConfig config) {
+        StringBuilder header = new StringBuilder();
+        for (Map.Entry<String, String> cookie : from(config).entrySet()) {
+            if (header.length() > 0) {
+                header.append("; ");
+            }
+            header.append(cookie.getKey()).append('=').append(cookie.getValue());
+        }
+        return header.toString();
+    }
+
+    public static String sanitizeAuthSessionId(String authSessionId) {
+        if (authSessionId != null && authSessionId.contains(".")) {
+            return authSessionId.split("\\.", 2)[0];
+        }
+        return authSessionId;
+    }
+
+    private static String sanitizeToken(String token) {
+        if (token != null && token.contains(".") && token.split("\\.").length > 5) {
+            return token.split("\\.", 2)[0];
+        }
+        return token;
+    }
+
+    private static void put(Map<String, String> cookies, String name, String value) {
+        if (value != null) {
+            cookies.put(name, value);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.kalvium.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.ui.ExpectedConditions;
+import org.openqa.selenium.support.ui.WebDriverWait;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.kalvium.model.StepEvent;
+
+/**
+ * Condition-based waits for a single automation run. Every wait returns as soon
+ * as its condition holds and records how long it actually blocked.
+ */
+public class WaitEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(WaitEngine.class);
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(100);
+
+    private static final String DOM_SETTLED_SCRIPT =
+            "var quiet = arguments[0], timeout = arguments[1], done = arguments[arguments.length - 1];" +
+            "var finished = false, timer, hard;" +
+            "var observer = new MutationObserver(function() {" +
+            "  clearTimeout(timer);" +
+            "  timer = setTimeout(finish, quiet, true);" +
+            "});" +
+            "function finish(settled) {" +
+            "  if (finished) return;" +
+            "  finished = true;" +
+            "  observer.disconnect();" +
+            "  clearTimeout(timer);" +
+            "  clearTimeout(hard);" +
+            "  done(settled);" +
+            "}" +
+            "observer.observe(document.documentElement || document," +
+            "  { childList: true, subtree: true, attributes: true, characterData: true });" +
+            "timer = setTimeout(finish, quiet, true);" +
+            "hard = setTimeout(finish, timeout, false);";
+
+    private static final String NETWORK_TRACKER_SCRIPT =
+            "if (!window.__worklogInflight) {" +
+            "  window.__worklogInflight = { count: 0, last: Date.now() };" +
+            "  var t = window.__worklogInflight;" +
+            "  var begin = function() { t.count++; t.last = Date.now(); };" +
+            "  var end = function() { t.count = Math.max(0, t.count - 1); t.last = Date.now(); };" +
+            "  var origFetch = window.fetch;" +
+            "  if (origFetch) {" +
+            "    window.fetch = function() {" +
+            "      begin();" +
+            "      return origFetch.apply(this, arguments).finally(end);" +
+            "    };" +
+            "  }" +
+            "  var origSend = XMLHttpRequest.prototype.send;" +
+            "  XMLHttpRequest.prototype.send = function() {" +
+            "    begin();" +
+            "    this.addEventListener('loadend', end);" +
+            "    return origSend.apply(this, arguments);" +
+            "  };" +
+            "}" +
+            "var entries = performance.getEntriesByType('resource').length;" +
+            "return [window.__worklogInflight.count, Date.now() - window.__worklogInflight.last, entries];";
+
+    public static class WaitRecord {
+        private final String name;
+        private final long elapsedMillis;
+        private final boolean satisfied;
+
+        WaitRecord(String name, long elapsedMillis, boolean satisfied) {
+            this.name = name;
+            this.elapsedMillis = elapsedMillis;
+            this.satisfied = satisfied;
+        }
+
+        public String getName() { return name; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public boolean isSatisfied() { return satisfied; }
+    }
+
+    private final WebDriver driver;
+    private final JavascriptExecutor js;
+    private final RunLog runLog;
+    private final List<WaitRecord> records = new ArrayList<>();
+
+    public WaitEngine(WebDriver driver, RunLog runLog) {
+        this.driver = driver;
+        this.js = (JavascriptExecutor) driver;
+        this.runLog = runLog;
+    }
+
+    /**
+     * Block until the condition returns a non-null, non-false value.
+     * @throws TimeoutException if the condition does not hold within the timeout
+     */
+    public <T> T until(String name, Duration timeout, Function<WebDriver, T> condition) {
+        long start = System.currentTimeMillis();
+        try {
+            WebDriverWait wait = new WebDriverWait(driver, timeout, POLL_INTERVAL);
+            wait.ignoring(NoSuchElementException.class, StaleElementReferenceException.class);
+            T result = wait.until(condition);
+            record(name, start, true);
+            return result;
+        } catch (TimeoutException e) {
+            record(name, start, false);
+            throw e;
+        }
+    }
+
+    /**
+     * Same as {@link #until} but returns false instead of throwing on timeout.
+     */
+    public boolean tryUntil(String name, Duration timeout, Function<WebDriver, ?> condition) {
+        try {
+            until(name, timeout, condition);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        }
+    }
+
+    public WebElement present(String name, By locator, Duration timeout) {
+        return until(name, timeout, ExpectedConditions.presenceOfElementLocated(locator));
+    }
+
+    public WebElement interactable(String name, By locator, Duration timeout) {
+        return until(name, timeout, ExpectedConditions.elementToBeClickable(locator));
+    }
+
+    /**
+     * Resolve a registry key by polling all of its alternatives in ranked order each tick,
+     * so a drifted primary locator fails over on the next poll instead of after the timeout.
+     * Implicit waits are suspended meanwhile, since each miss would otherwise block.
+     */
+    public WebElement locate(String name, String key, Duration timeout, boolean clickable) {
+        List<XPathLoader.Locator> candidates = XPathLoader.locators(key);
+        Duration implicitWait = driver.manage().timeouts().getImplicitWaitTimeout();
+        driver.manage().timeouts().implicitlyWait(Duration.ZERO);
+        long start = System.currentTimeMillis();
+        try {
+            return until(name, timeout, webDriver -> {
+                for (int i = 0; i < candidates.size(); i++) {
+                    XPathLoader.Locator candidate = candidates.get(i);
+                    for (WebElement element : webDriver.findElements(candidate.toBy())) {
+                        if (!clickable || (element.isDisplayed() && element.isEnabled())) {
+                            resolved(candidates, i, System.currentTimeMillis() - start);
+                            return element;
+                        }
+                    }
+                }
+                return null;
+            });
+        } catch (TimeoutException e) {
+            candidates.forEach(XPathLoader.Locator::recordMiss);
+            throw e;
+        } finally {
+            driver.manage().timeouts().implicitlyWait(implicitWait);
+        }
+    }
+
+    /**
+     * Same as {@link #locate} but returns null instead of throwing on timeout.
+     */
+    public WebElement tryLocate(String name, String key, Duration timeout, boolean clickable) {
+        try {
+            return locate(name, key, timeout, clickable);
+        } catch (TimeoutException e) {
+            return null;
+        }
+    }
+
+    public boolean documentReady(Duration timeout) {
+        return tryUntil("document ready", timeout, webDriver -> {
+            Object readyState = js.executeScript("return document.readyState");
+            return "interactive".equals(readyState) || "complete".equals(readyState);
+        });
+    }
+
+    /**
+     * Wait until no DOM mutation has been observed for the quiet period.
+     * @return true if the DOM settled before the timeout
+     */
+    public boolean domSettled(Duration quietPeriod, Duration timeout) {
+        long start = System.currentTimeMillis();
+        boolean settled;
+        try {
+            Object result = js.executeAsyncScript(DOM_SETTLED_SCRIPT, quietPeriod.toMillis(), timeout.toMillis());
+            settled = Boolean.TRUE.equals(result);
+        } catch (Exception e) {
+            logger.debug("DOM settle wait failed: {}", e.getMessage());
+            settled = false;
+        }
+        record("DOM settled", start, settled);
+        return settled;
+    }
+
+    /**
+     * Wait until no fetch/XHR is in flight and no new resource has started for the idle period.
+     * @return true if the network went idle before the timeout
+     */
+    public boolean networkIdle(Duration idlePeriod, Duration timeout) {
+        long[] lastEntries = {-1};
+        return tryUntil("network idle", timeout, webDriver -> {
+            Object raw = js.executeScript(NETWORK_TRACKER_SCRIPT);
+            if (!(raw instanceof List<?> values) || values.size() < 3) {
+                return true;
+            }
+            long inflight = ((Number) values.get(0)).longValue();
+            long quietFor = ((Number) values.get(1)).longValue();
+            long entries = ((Number) values.get(2)).longValue();
+            boolean stableResources = entries == lastEntries[0];
+            lastEntries[0] = entries;
+            return inflight == 0 && quietFor >= idlePeriod.toMillis() && stableResources;
+        });
+    }
+
+    public List<WaitRecord> getRecords() {
+        return Collections.unmodifiableList(records);
+    }
+
+    public long getTotalWaitMillis() {
+        return records.stream().mapToLong(WaitRecord::getElapsedMillis).sum();
+    }
+
+    private void resolved(List<XPathLoader.Locator> candidates, int winner, long elapsed) {
+        XPathLoader.Locator locator = candidates.get(winner);
+        locator.recordHit(elapsed);
+        for (int i = 0; i < winner; i++) {
+            candidates.get(i).recordMiss();
+        }
+        if (runLog != null) {
+            runLog.note("Resolved " + locator.describe() + " in " + elapsed + " ms"
+                    + (winner > 0 ? " after " + winner + " failed alternative(s)" : ""),
+                    RunLog.attrs("xpathKey", locator.getKey(), "locator", String.valueOf(locator.getOrder())));
+        }
+    }
+
+    private void record(String name, long start, boolean satisfied) {
+        long elapsed = System.currentTimeMillis() - start;
+        records.add(new WaitRecord(name, elapsed, satisfied));
+        if (runLog != null) {
+            runLog.record("wait: " + name, start, elapsed,
+                    satisfied ? StepEvent.Outcome.OK : StepEvent.Outcome.WARNING,
+                    "Waited " + elapsed + " ms for " + name + (satisfied ? "" : " (timed out)"),
+                    RunLog.attrs("timedOut", String.valueOf(!satisfied)));
+        }
+    }
+}
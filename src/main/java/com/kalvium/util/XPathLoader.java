@@ -2,26 +2,137 @@ package com.kalvium.util;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import org.openqa.selenium.By;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Registry of page locators loaded from xpaths.properties. A key maps to its
+ * primary XPath plus optional alternatives ({@code key.alt.1}, {@code key.alt.2}, ...)
+ * written as plain XPath or prefixed with {@code css:}, {@code xpath:} or {@code text:}.
+ * Every alternative keeps hit/miss and latency statistics, and {@link #locators(String)}
+ * returns them best-first. An external override file can be hot-reloaded with {@link #watch(Path)}.
+ */
 public class XPathLoader {
 
     private static final Logger logger = LoggerFactory.getLogger(XPathLoader.class);
-    private static final Properties xpaths = new Properties();
+    private static final Pattern ALT_KEY = Pattern.compile("(.+)\\.alt\\.(\\d+)");
+
+    private static volatile Properties xpaths = new Properties();
+    private static volatile Map<String, List<Locator>> registry = new LinkedHashMap<>();
     private static boolean loaded = false;
+    private static Path overrideFile;
+    private static WatchService watchService;
+
+    public enum Kind {
+        XPATH,
+        CSS,
+        TEXT
+    }
+
+    public static class Locator {
+        private final String key;
+        private final int order;
+        private final Kind kind;
+        private final String expression;
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong totalHitMillis = new AtomicLong();
+
+        Locator(String key, int order, Kind kind, String expression) {
+            this.key = key;
+            this.order = order;
+            this.kind = kind;
+            this.expression = expression;
+        }
+
+        public String getKey() { return key; }
+        public int getOrder() { return order; }
+        public Kind getKind() { return kind; }
+        public String getExpression() { return expression; }
+        public long getHits() { return hits.get(); }
+        public long getMisses() { return misses.get(); }
+
+        public boolean isCss() {
+            return kind == Kind.CSS;
+        }
+
+        /**
+         * The CSS selector for css locators, otherwise an XPath (text locators expanded).
+         */
+        public String selector() {
+            return kind == Kind.TEXT
+                    ? "//*[contains(normalize-space(text()), " + xpathLiteral(expression) + ")]"
+                    : expression;
+        }
+
+        public By toBy() {
+            return isCss() ? By.cssSelector(selector()) : By.xpath(selector());
+        }
+
+        public void recordHit(long millis) {
+            hits.incrementAndGet();
+            totalHitMillis.addAndGet(millis);
+        }
+
+        public void recordMiss() {
+            misses.incrementAndGet();
+        }
+
+        public long getAvgHitMillis() {
+            long h = hits.get();
+            return h > 0 ? totalHitMillis.get() / h : 0;
+        }
+
+        /**
+         * Untried locators count as 0.5 so they are tried before ones that mostly fail.
+         */
+        double successRate() {
+            long h = hits.get();
+            long total = h + misses.get();
+            return total > 0 ? (double) h / total : 0.5;
+        }
+
+        public String describe() {
+            return key + "#" + order + " (" + kind.name().toLowerCase() + ")";
+        }
+
+        void copyStats(Locator other) {
+            hits.set(other.hits.get());
+            misses.set(other.misses.get());
+            totalHitMillis.set(other.totalHitMillis.get());
+        }
+    }
 
     static {
         loadXPaths();
     }
 
-    private static void loadXPaths() {
+    private static synchronized void loadXPaths() {
         if (loaded) {
             return;
         }
 
+        Properties fresh = new Properties();
         try (InputStream input = XPathLoader.class.getClassLoader()
                 .getResourceAsStream("xpaths.properties")) {
 
@@ -30,14 +141,78 @@ public class XPathLoader {
                 throw new RuntimeException("xpaths.properties file not found in classpath");
             }
 
-            xpaths.load(input);
-            loaded = true;
-            logger.info("Loaded {} XPath locators from xpaths.properties", xpaths.size());
-
+            fresh.load(input);
         } catch (IOException ex) {
             logger.error("Error loading xpaths.properties", ex);
             throw new RuntimeException("Failed to load XPath properties", ex);
         }
+
+        if (overrideFile != null && Files.isRegularFile(overrideFile)) {
+            try (InputStream input = Files.newInputStream(overrideFile)) {
+                fresh.load(input);
+            } catch (IOException ex) {
+                // Keep serving the previous locators rather than half-applied ones
+                logger.error("Could not read locator overrides {}: {}", overrideFile, ex.getMessage());
+                if (!xpaths.isEmpty()) {
+                    loaded = true;
+                    return;
+                }
+            }
+        }
+
+        // Publish whole maps so a concurrent lookup never sees a half-reloaded one
+        xpaths = fresh;
+        registry = buildRegistry(fresh, registry);
+        loaded = true;
+        logger.info("Loaded {} locator key(s) from xpaths.properties{}", registry.size(),
+                overrideFile != null ? " with overrides from " + overrideFile : "");
+    }
+
+    private static Map<String, List<Locator>> buildRegistry(Properties props, Map<String, List<Locator>> previous) {
+        Map<String, Map<Integer, String>> byKey = new LinkedHashMap<>();
+        for (String name : props.stringPropertyNames()) {
+            String value = props.getProperty(name);
+            if (value == null || value.trim().isEmpty()) {
+                continue;
+            }
+            Matcher alt = ALT_KEY.matcher(name);
+            if (alt.matches()) {
+                byKey.computeIfAbsent(alt.group(1), k -> new TreeMap<>())
+                        .put(Integer.parseInt(alt.group(2)), value.trim());
+            } else {
+                byKey.computeIfAbsent(name, k -> new TreeMap<>()).put(0, value.trim());
+            }
+        }
+
+        Map<String, List<Locator>> built = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<Integer, String>> entry : byKey.entrySet()) {
+            List<Locator> locators = new ArrayList<>();
+            for (Map.Entry<Integer, String> alternative : entry.getValue().entrySet()) {
+                Locator locator = parse(entry.getKey(), alternative.getKey(), alternative.getValue());
+                // Statistics survive a reload as long as the expression is unchanged
+                for (Locator old : previous.getOrDefault(entry.getKey(), List.of())) {
+                    if (old.kind == locator.kind && old.expression.equals(locator.expression)) {
+                        locator.copyStats(old);
+                    }
+                }
+                locators.add(locator);
+            }
+            built.put(entry.getKey(), locators);
+        }
+        return built;
+    }
+
+    private static Locator parse(String key, int order, String value) {
+        if (value.startsWith("css:")) {
+            return new Locator(key, order, Kind.CSS, value.substring(4).trim());
+        }
+        if (value.startsWith("text:")) {
+            return new Locator(key, order, Kind.TEXT, value.substring(5).trim());
+        }
+        if (value.startsWith("xpath:")) {
+            return new Locator(key, order, Kind.XPATH, value.substring(6).trim());
+        }
+        return new Locator(key, order, Kind.XPATH, value);
     }
 
     /**
@@ -74,9 +249,107 @@ public class XPathLoader {
         return xpaths.containsKey(key);
     }
 
-    public static void reload() {
+    /**
+     * All alternatives for a key, best first: highest success rate, then fastest
+     * average resolution, then declaration order.
+     * @throws IllegalArgumentException if key not found
+     */
+    public static List<Locator> locators(String key) {
+        List<Locator> locators = registry.get(key);
+        if (locators == null || locators.isEmpty()) {
+            throw new IllegalArgumentException("Locator not found for key: " + key);
+        }
+        List<Locator> ranked = new ArrayList<>(locators);
+        ranked.sort(Comparator.comparingDouble(Locator::successRate).reversed()
+                .thenComparingLong(Locator::getAvgHitMillis)
+                .thenComparingInt(Locator::getOrder));
+        return ranked;
+    }
+
+    public static List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (List<Locator> locators : registry.values()) {
+            for (Locator locator : locators) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("key", locator.key);
+                entry.put("order", locator.order);
+                entry.put("kind", locator.kind);
+                entry.put("expression", locator.expression);
+                entry.put("hits", locator.getHits());
+                entry.put("misses", locator.getMisses());
+                entry.put("avgHitMillis", locator.getAvgHitMillis());
+                stats.add(entry);
+            }
+        }
+        return stats;
+    }
+
+    public static synchronized void reload() {
         loaded = false;
-        xpaths.clear();
         loadXPaths();
     }
+
+    /**
+     * Layer the given file over the bundled locators and reload whenever it changes.
+     */
+    public static synchronized void watch(Path file) throws IOException {
+        overrideFile = file.toAbsolutePath();
+        reload();
+        if (watchService != null) {
+            return;
+        }
+
+        Path directory = overrideFile.getParent();
+        Files.createDirectories(directory);
+        watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        WatchService service = watchService;
+        Thread watcher = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey watchKey = service.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event : watchKey.pollEvents()) {
+                        Object context = event.context();
+                        if (context instanceof Path changedPath && overrideFile.getFileName().equals(changedPath)) {
+                            changed = true;
+                        }
+                    }
+                    watchKey.reset();
+                    if (changed) {
+                        logger.info("Locator file {} changed, reloading", overrideFile);
+                        reload();
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                logger.debug("Locator file watcher stopped");
+            }
+        }, "locator-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        logger.info("Watching {} for locator changes", overrideFile);
+    }
+
+    public static synchronized void stopWatching() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.debug("Could not close locator watcher: {}", e.getMessage());
+        }
+        watchService = null;
+    }
+
+    private static String xpathLiteral(String text) {
+        if (!text.contains("'")) {
+            return "'" + text + "'";
+        }
+        if (!text.contains("\"")) {
+            return "\"" + text + "\"";
+        }
+        return "concat('" + text.replace("'", "', \"'\", '") + "')";
+    }
 }
@@ -0,0 +1,100 @@
+// Fixture portal behaviour: renders the pending row after a simulated API call,
+// opens the worklog dialog, mounts the editor once a status is chosen and submits.
+(function () {
+    function el(tag, attrs, children) {
+        var node = document.createElement(tag);
+        Object.keys(attrs || {}).forEach(function (name) {
+            node.setAttribute(name, attrs[name]);
+        });
+        (children || []).forEach(function (child) {
+            node.appendChild(typeof child === 'string' ? document.createTextNode(child) : child);
+        });
+        return node;
+    }
+
+    function renderRows(rows) {
+        var body = document.getElementById('worklog-rows');
+        if (!body) {
+            return;
+        }
+        body.innerHTML = '';
+        rows.forEach(function (row) {
+            var button = el('button', { type: 'button' }, [el('p', {}, ['Complete'])]);
+            button.addEventListener('click', function () { openDialog(row); });
+            body.appendChild(el('tr', {}, [el('td', {}, [row.date]), el('td', {}, ['Pending']), el('td', {}, [button])]));
+        });
+    }
+
+    function section(placeholder, addMore, wrapInParagraph) {
+        var first = wrapInParagraph ? el('li', {}, [el('p', {}, [placeholder])]) : el('li', {}, [placeholder]);
+        return el('ul', {}, [first, el('li', {}, [addMore])]);
+    }
+
+    function mountEditor(container) {
+        if (container.children.length > 1) {
+            return;
+        }
+        var editable = el('div', { contenteditable: 'true', 'class': 'ProseMirror tiptap' }, [
+            section('Tasks completed today', 'Add more tasks', false),
+            section('Challenges faced', 'Add any obstacles', true),
+            section('Blockers', 'Add any blockers faced', true)
+        ]);
+        // form/div[1]/div[2]/div/div[2]/div/ul[n]
+        container.appendChild(el('div', {}, [el('div', {}, [el('div', { 'class': 'toolbar' }, ['B I U']), el('div', {}, [editable])])]));
+    }
+
+    function openDialog(row) {
+        var select = el('select', { name: 'workStatus' }, [
+            el('option', { value: 'WORKING' }, ['Working']),
+            el('option', { value: 'LEAVE' }, ['Leave'])
+        ]);
+        var combo = el('button', { type: 'button', role: 'combobox', 'aria-haspopup': 'listbox' }, ['Select status']);
+        var fields = el('div', {}, [el('div', {}, [select, combo])]);
+        var submit = el('button', { type: 'submit' }, ['Submit']);
+        var form = el('form', {}, [fields, el('div', {}, [el('div', {}, [submit])])]);
+
+        select.selectedIndex = -1;
+        select.addEventListener('change', function () {
+            setTimeout(function () { mountEditor(fields); }, 150);
+        });
+        combo.addEventListener('click', function () { select.focus(); });
+
+        form.addEventListener('submit', function (event) {
+            event.preventDefault();
+            var editable = form.querySelector('[contenteditable]');
+            var lists = editable ? editable.querySelectorAll('ul') : [];
+            var payload = {
+                id: row.id,
+                status: select.value,
+                tasks: lists[0] ? lists[0].innerText.trim() : '',
+                challenges: lists[1] ? lists[1].innerText.trim() : '',
+                blockers: lists[2] ? lists[2].innerText.trim() : ''
+            };
+            fetch('/api/fixture/submit', {
+                method: 'POST',
+                headers: { 'Content-Type': 'application/json' },
+                body: JSON.stringify(payload)
+            }).then(function (response) {
+                if (response.ok) {
+                    dialog.remove();
+                    renderRows([]);
+                }
+            });
+        });
+
+        var dialog = el('div', { role: 'dialog', 'class': 'dialog' }, [
+            el('div', {}, [el('h2', {}, ['My Worklog'])]),
+            el('div', {}, [form])
+        ]);
+        document.body.appendChild(dialog);
+    }
+
+    document.addEventListener('DOMContentLoaded', function () {
+        if (!document.getElementById('worklog-rows')) {
+            return;
+        }
+        fetch('/api/fixture/pending')
+            .then(function (response) { return response.json(); })
+            .then(renderRows);
+    });
+})();
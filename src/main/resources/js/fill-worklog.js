@@ -0,0 +1,180 @@
+/*
+ * Fills the worklog form in one executeAsyncScript call.
+ *
+ * arguments[0]  locators: { key: [{ css: bool, value: string }, ...] } in ranked order
+ * arguments[1]  content:  { tasks, challenges, blockers }
+ * arguments[2]  timeout in ms for elements that appear after the dropdown change
+ * last argument WebDriver callback, receives { field: { status, key, index, tried, ms, elapsed, detail } }
+ *
+ * status is "ok", "missing" (no locator matched) or "failed" (matched but threw).
+ * ms is the time spent finding that field's element (null when it was not found);
+ * elapsed is the time since the script started.
+ */
+(function (locators, content, timeoutMs, done) {
+    var started = Date.now();
+    var report = {};
+    var finished = false;
+
+    function finish() {
+        if (!finished) {
+            finished = true;
+            done(report);
+        }
+    }
+
+    // Exceptions in timer callbacks escape the outer try, so each one reports through here
+    function guard(fn) {
+        return function () {
+            try {
+                fn.apply(null, arguments);
+            } catch (e) {
+                report.error = { status: 'failed', detail: String(e), elapsed: Date.now() - started };
+                finish();
+            }
+        };
+    }
+
+    function find(key) {
+        var lookupStarted = Date.now();
+        var list = locators[key] || [];
+        for (var i = 0; i < list.length; i++) {
+            var candidate = list[i];
+            var el = null;
+            try {
+                el = candidate.css
+                    ? document.querySelector(candidate.value)
+                    : document.evaluate(candidate.value, document, null,
+                        XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue;
+            } catch (e) {
+                el = null;
+            }
+            if (el) {
+                return { el: el, index: i, ms: Date.now() - lookupStarted };
+            }
+        }
+        return null;
+    }
+
+    function waitFor(key, ms, callback) {
+        var waitStarted = Date.now();
+        var deadline = waitStarted + ms;
+        var poll = guard(function () {
+            var found = find(key);
+            if (found) {
+                found.ms = Date.now() - waitStarted;
+            }
+            if (found || Date.now() >= deadline) {
+                callback(found);
+            } else {
+                setTimeout(poll, 50);
+            }
+        });
+        poll();
+    }
+
+    function mark(field, key, found, status, detail) {
+        report[field] = {
+            status: status,
+            key: key,
+            index: found ? found.index : -1,
+            tried: (locators[key] || []).length,
+            ms: found ? found.ms : null,
+            elapsed: Date.now() - started,
+            detail: detail || null
+        };
+    }
+
+    function selectFirst(select) {
+        select.scrollIntoView({ block: 'center' });
+        select.selectedIndex = 0;
+        select.dispatchEvent(new Event('change', { bubbles: true }));
+        select.dispatchEvent(new Event('input', { bubbles: true }));
+    }
+
+    function selectDropdown(next) {
+        var select = find('dropdown.select.main');
+        if (select) {
+            selectFirst(select.el);
+            mark('dropdown', 'dropdown.select.main', select, 'ok');
+            return next();
+        }
+        var button = find('dropdown.button.main');
+        if (!button) {
+            mark('dropdown', 'dropdown.button.main', null, 'missing');
+            return next();
+        }
+        button.el.scrollIntoView({ block: 'center' });
+        button.el.click();
+        waitFor('dropdown.select.main', 2000, function (opened) {
+            if (opened) {
+                selectFirst(opened.el);
+                mark('dropdown', 'dropdown.select.main', opened, 'ok');
+                return next();
+            }
+            var option = find('dropdown.option.first');
+            if (option) {
+                option.el.selected = true;
+                option.el.parentElement.dispatchEvent(new Event('change', { bubbles: true }));
+                mark('dropdown', 'dropdown.option.first', option, 'ok');
+            } else {
+                mark('dropdown', 'dropdown.option.first', null, 'missing');
+            }
+            next();
+        });
+    }
+
+    function fillEditor(el, text) {
+        el.scrollIntoView({ block: 'center' });
+        el.click();
+        el.focus();
+        var range = document.createRange();
+        range.selectNodeContents(el);
+        var sel = window.getSelection();
+        sel.removeAllRanges();
+        sel.addRange(range);
+        document.execCommand('delete', false, null);
+        document.execCommand('insertText', false, text);
+        el.dispatchEvent(new InputEvent('input', { bubbles: true, inputType: 'insertText', data: text }));
+        el.dispatchEvent(new Event('change', { bubbles: true }));
+    }
+
+    function fillSection(section, next) {
+        var key = section + '.first.item';
+        waitFor(key, section === 'tasks' ? timeoutMs : 1000, function (found) {
+            if (!found) {
+                mark(section, key, null, 'missing');
+            } else {
+                try {
+                    fillEditor(found.el, content[section]);
+                    mark(section, key, found, 'ok');
+                } catch (e) {
+                    mark(section, key, found, 'failed', String(e));
+                }
+            }
+
+            var addMoreKey = section + '.add.more';
+            var addMore = find(addMoreKey);
+            if (addMore) {
+                addMore.el.parentNode.removeChild(addMore.el);
+                mark(section + '.remove', addMoreKey, addMore, 'ok');
+            } else {
+                mark(section + '.remove', addMoreKey, null, 'missing');
+            }
+            // Let the editor process the input before touching the next section
+            setTimeout(guard(next), 50);
+        });
+    }
+
+    try {
+        selectDropdown(function () {
+            fillSection('tasks', function () {
+                fillSection('challenges', function () {
+                    fillSection('blockers', finish);
+                });
+            });
+        });
+    } catch (e) {
+        report.error = { status: 'failed', detail: String(e), elapsed: Date.now() - started };
+        finish();
+    }
+})(arguments[0], arguments[1], arguments[2], arguments[arguments.length - 1]);